@@ -0,0 +1,138 @@
+package com.alihafizji.splitimageview;
+
+import android.animation.ValueAnimator;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Debug;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.view.MotionEvent;
+import android.view.View;
+
+/**
+ * Guards the hot paths of {@link SplitImageView} against allocations. Every test warms the path
+ * up first and then expects zero allocations on the calling thread for the measured frames.
+ */
+public class SplitImageViewAllocationTest extends AndroidTestCase {
+
+    private static final int VIEW_WIDTH = 400;
+    private static final int VIEW_HEIGHT = 300;
+    private static final int WARM_UP_FRAMES = 10;
+    private static final int MEASURED_FRAMES = 200;
+    private static final int ANIMATION_DURATION = 1000;
+
+    private SplitImageView mSplitImageView;
+    private Canvas mCanvas;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mSplitImageView = new SplitImageView(getContext());
+        mSplitImageView.setForegroundImageBitmap(Bitmap.createBitmap(200, 100, Bitmap.Config.ARGB_8888));
+        mSplitImageView.setBackgroundImageBitmap(Bitmap.createBitmap(200, 100, Bitmap.Config.ARGB_8888));
+        mSplitImageView.setScaleType(SplitImageView.ScaleType.CENTER_CROP);
+        mSplitImageView.setSnapToBounds(false);
+        mSplitImageView.measure(
+                View.MeasureSpec.makeMeasureSpec(VIEW_WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(VIEW_HEIGHT, View.MeasureSpec.EXACTLY));
+        mSplitImageView.layout(0, 0, VIEW_WIDTH, VIEW_HEIGHT);
+
+        mCanvas = new Canvas(Bitmap.createBitmap(VIEW_WIDTH, VIEW_HEIGHT, Bitmap.Config.ARGB_8888));
+    }
+
+    public void testSteadyStateDrawDoesNotAllocate() {
+        assertNoAllocations("onDraw", new Frame() {
+            @Override
+            public void run(int frame) {
+                mSplitImageView.draw(mCanvas);
+            }
+        });
+    }
+
+    public void testSplitUpdateDoesNotAllocate() {
+        assertNoAllocations("setSplitPercent", new Frame() {
+            @Override
+            public void run(int frame) {
+                mSplitImageView.setSplitPercent(frame % 101);
+                mSplitImageView.draw(mCanvas);
+            }
+        });
+    }
+
+    public void testDragDoesNotAllocate() {
+        final long downTime = SystemClock.uptimeMillis();
+        MotionEvent down = MotionEvent.obtain(downTime, downTime, MotionEvent.ACTION_DOWN, 0, VIEW_HEIGHT, 0);
+        mSplitImageView.onTouchEvent(down);
+        down.recycle();
+
+        final MotionEvent move = MotionEvent.obtain(downTime, downTime, MotionEvent.ACTION_MOVE, 0, VIEW_HEIGHT, 0);
+        try {
+            assertNoAllocations("drag", new Frame() {
+                @Override
+                public void run(int frame) {
+                    float fraction = (frame % 100) / 100f;
+                    move.setLocation(VIEW_WIDTH * fraction, VIEW_HEIGHT * (1 - fraction));
+                    mSplitImageView.onTouchEvent(move);
+                    mSplitImageView.draw(mCanvas);
+                }
+            });
+        } finally {
+            move.recycle();
+        }
+    }
+
+    public void testAnimationFramesDoNotAllocate() {
+        // Animators need a looper to run, so the frames are stepped by hand through the same
+        // listener the snap animation and the automatic lead in use.
+        assertAnimationFramesDoNotAllocate("animation", mSplitImageView.mSplitPercentUpdateListener);
+    }
+
+    public void testAutomaticAnimationFramesDoNotAllocate() {
+        // The automatic animation is started so that its listener takes frames, but the looper
+        // of this thread never runs, so only the frames stepped by hand reach the view.
+        if (Looper.myLooper() == null) {
+            Looper.prepare();
+        }
+        mSplitImageView.setEnableAutomaticAnimation(true);
+        try {
+            assertAnimationFramesDoNotAllocate("automatic animation",
+                    mSplitImageView.mAutomaticSplitPercentUpdateListener);
+        } finally {
+            mSplitImageView.setEnableAutomaticAnimation(false);
+        }
+    }
+
+    private void assertAnimationFramesDoNotAllocate(String path, ValueAnimator.AnimatorUpdateListener listener) {
+        final ValueAnimator animator = ValueAnimator.ofInt(0, 100);
+        animator.setDuration(ANIMATION_DURATION);
+        animator.addUpdateListener(listener);
+
+        assertNoAllocations(path, new Frame() {
+            @Override
+            public void run(int frame) {
+                animator.setCurrentPlayTime((frame * 16) % ANIMATION_DURATION);
+                mSplitImageView.draw(mCanvas);
+            }
+        });
+    }
+
+    private void assertNoAllocations(String path, Frame frame) {
+        for (int i = 0; i < WARM_UP_FRAMES; i++) {
+            frame.run(i);
+        }
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        for (int i = 0; i < MEASURED_FRAMES; i++) {
+            frame.run(WARM_UP_FRAMES + i);
+        }
+        Debug.stopAllocCounting();
+
+        assertEquals("Allocations in " + path + " after warm-up", 0, Debug.getThreadAllocCount());
+    }
+
+    private interface Frame {
+        void run(int frame);
+    }
+}
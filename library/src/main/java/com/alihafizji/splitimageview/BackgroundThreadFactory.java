@@ -0,0 +1,34 @@
+package com.alihafizji.splitimageview;
+
+import android.os.Process;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the numbered, background priority worker threads of the library's executors, so
+ * their work never competes with the UI thread.
+ */
+final class BackgroundThreadFactory implements ThreadFactory {
+
+    private final String mName;
+    private final AtomicInteger mCount = new AtomicInteger(1);
+
+    /**
+     * @param name The name of the threads, each is suffixed with its number
+     */
+    BackgroundThreadFactory(String name) {
+        mName = name;
+    }
+
+    @Override
+    public Thread newThread(final Runnable runnable) {
+        return new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }
+        }, mName + " #" + mCount.getAndIncrement());
+    }
+}
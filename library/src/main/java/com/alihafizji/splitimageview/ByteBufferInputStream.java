@@ -0,0 +1,68 @@
+package com.alihafizji.splitimageview;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads a ByteBuffer, heap, direct or memory mapped, without copying it up front. Marking is
+ * supported natively so BitmapFactory does not add a buffering copy of its own.
+ */
+final class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer mBuffer;
+    private int mMark;
+
+    /**
+     * @param buffer The bytes between its position and its limit are read. The stream moves
+     *               the position, pass a duplicate if the buffer is shared.
+     */
+    ByteBufferInputStream(ByteBuffer buffer) {
+        mBuffer = buffer;
+        mMark = buffer.position();
+    }
+
+    @Override
+    public int read() {
+        return mBuffer.hasRemaining() ? mBuffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        if (!mBuffer.hasRemaining()) {
+            return -1;
+        }
+        int count = Math.min(len, mBuffer.remaining());
+        mBuffer.get(b, off, count);
+        return count;
+    }
+
+    @Override
+    public long skip(long n) {
+        int count = (int) Math.max(0, Math.min(n, mBuffer.remaining()));
+        mBuffer.position(mBuffer.position() + count);
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return mBuffer.remaining();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+        mMark = mBuffer.position();
+    }
+
+    @Override
+    public synchronized void reset() {
+        mBuffer.position(mMark);
+    }
+}
@@ -0,0 +1,152 @@
+package com.alihafizji.splitimageview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+
+/**
+ * The performance overlay {@link SplitImageView} draws in debug draw mode. It shows the frame
+ * rate while the view is being redrawn continuously, the time the last frame took to draw, the
+ * number of split updates that went into the last frame, and for each layer its decoded size and
+ * memory against the size it is displayed at.
+ */
+final class DebugHud {
+
+    private static final float TEXT_SIZE_DP = 11;
+    private static final float PADDING_DP = 4;
+    // Frames further apart than this belong to separate bursts, e.g. two drags
+    private static final long IDLE_FRAME_NANOS = 250 * 1000000L;
+    private static final float FPS_SMOOTHING = 0.2f;
+
+    private final Paint mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mBackgroundPaint = new Paint();
+    private final float mPadding;
+    private final float mLineHeight;
+    private final StringBuilder mLine = new StringBuilder();
+    private final RectF mTempDisplayed = new RectF();
+
+    private long mFrameStartNanos;
+    private long mPreviousFrameStartNanos;
+    private long mLastDrawNanos;
+    private float mFps;
+    private int mSplitUpdates;
+    private int mLastFrameSplitUpdates;
+
+    DebugHud(float density) {
+        mTextPaint.setColor(Color.WHITE);
+        mTextPaint.setTextSize(TEXT_SIZE_DP * density);
+        mBackgroundPaint.setColor(0xA0000000);
+        mPadding = PADDING_DP * density;
+        Paint.FontMetrics metrics = mTextPaint.getFontMetrics();
+        mLineHeight = metrics.descent - metrics.ascent;
+    }
+
+    void onSplitUpdate() {
+        mSplitUpdates++;
+    }
+
+    void onFrameStart() {
+        mFrameStartNanos = System.nanoTime();
+        if (mPreviousFrameStartNanos != 0) {
+            long interval = mFrameStartNanos - mPreviousFrameStartNanos;
+            if (interval > IDLE_FRAME_NANOS) {
+                mFps = 0;
+            } else if (interval > 0) {
+                float fps = 1e9f / interval;
+                mFps = mFps == 0 ? fps : mFps + FPS_SMOOTHING * (fps - mFps);
+            }
+        }
+        mPreviousFrameStartNanos = mFrameStartNanos;
+        mLastFrameSplitUpdates = mSplitUpdates;
+        mSplitUpdates = 0;
+    }
+
+    void onFrameEnd() {
+        mLastDrawNanos = System.nanoTime() - mFrameStartNanos;
+    }
+
+    /**
+     * Draws the overlay in the top left corner of the view.
+     *
+     * @param drawMatrix The matrix the layers are drawn with, or null
+     */
+    void draw(Canvas canvas, float left, float top, Drawable foreground, Drawable background,
+              Matrix drawMatrix) {
+        int lines = 3 + (foreground != null ? 1 : 0) + (background != null ? 1 : 0);
+        float width = mTextPaint.measureText("bg 0000x0000 00.0MB shown 0000x0000") + 2 * mPadding;
+        canvas.drawRect(left, top, left + width, top + lines * mLineHeight + 2 * mPadding, mBackgroundPaint);
+
+        float x = left + mPadding;
+        float y = top + mPadding - mTextPaint.ascent();
+
+        mLine.setLength(0);
+        if (mFps > 0) {
+            mLine.append("fps ").append(Math.round(mFps));
+        } else {
+            mLine.append("fps idle");
+        }
+        drawLine(canvas, x, y);
+        y += mLineHeight;
+
+        mLine.setLength(0);
+        mLine.append("draw ");
+        appendDecimal(mLine, mLastDrawNanos / 1e6f);
+        mLine.append("ms");
+        drawLine(canvas, x, y);
+        y += mLineHeight;
+
+        mLine.setLength(0);
+        mLine.append("split updates/frame ").append(mLastFrameSplitUpdates);
+        drawLine(canvas, x, y);
+        y += mLineHeight;
+
+        if (foreground != null) {
+            appendLayer("fg ", foreground, drawMatrix);
+            drawLine(canvas, x, y);
+            y += mLineHeight;
+        }
+        if (background != null) {
+            appendLayer("bg ", background, drawMatrix);
+            drawLine(canvas, x, y);
+        }
+    }
+
+    private void appendLayer(String label, Drawable drawable, Matrix drawMatrix) {
+        mLine.setLength(0);
+        mLine.append(label);
+
+        // The bitmap of an oriented layer is stored unrotated
+        Drawable decoded = drawable instanceof OrientedDrawable
+                ? ((OrientedDrawable) drawable).getWrappedDrawable() : drawable;
+        Bitmap bitmap = decoded instanceof BitmapDrawable ? ((BitmapDrawable) decoded).getBitmap() : null;
+        if (bitmap != null) {
+            mLine.append(bitmap.getWidth()).append('x').append(bitmap.getHeight()).append(' ');
+            appendDecimal(mLine, bitmap.getRowBytes() * (float) bitmap.getHeight() / (1024 * 1024));
+            mLine.append("MB");
+        } else {
+            mLine.append(drawable.getIntrinsicWidth()).append('x').append(drawable.getIntrinsicHeight())
+                    .append(" no bitmap");
+        }
+
+        mTempDisplayed.set(drawable.getBounds());
+        if (drawMatrix != null) {
+            drawMatrix.mapRect(mTempDisplayed);
+        }
+        mLine.append(" shown ").append(Math.round(mTempDisplayed.width())).append('x')
+                .append(Math.round(mTempDisplayed.height()));
+    }
+
+    private void drawLine(Canvas canvas, float x, float y) {
+        canvas.drawText(mLine, 0, mLine.length(), x, y, mTextPaint);
+    }
+
+    private static void appendDecimal(StringBuilder builder, float value) {
+        int tenths = Math.round(value * 10);
+        builder.append(tenths / 10).append('.').append(tenths % 10);
+    }
+}
@@ -0,0 +1,105 @@
+package com.alihafizji.splitimageview;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The background threads layer images are decoded on. Work is run on a small fixed number of
+ * threads, most urgent priority first and in submission order within a priority, so layers of
+ * views on screen are decoded before those of views that are only about to be shown.
+ */
+final class DecodeScheduler {
+
+    /**
+     * Work for a view that is on screen.
+     */
+    static final int PRIORITY_VISIBLE = 0;
+
+    /**
+     * Work for a view that is attached but not on screen, e.g. scrolled just out of view.
+     */
+    static final int PRIORITY_NEAR_VISIBLE = 1;
+
+    /**
+     * Work for a view that is not attached yet.
+     */
+    static final int PRIORITY_PREFETCH = 2;
+
+    private static final int THREAD_COUNT = 2;
+    private static final int KEEP_ALIVE_SECONDS = 10;
+
+    private static final AtomicLong sSequence = new AtomicLong();
+    private static final ThreadPoolExecutor sExecutor;
+
+    static {
+        // Only Tasks are ever queued, so the queue can order them
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(),
+                new BackgroundThreadFactory("SplitImageView decode"));
+        executor.allowCoreThreadTimeOut(true);
+        sExecutor = executor;
+    }
+
+    /**
+     * A unit of scheduled work whose priority can change while it is queued.
+     */
+    static final class Task implements Runnable, Comparable<Task> {
+        private final Runnable mRunnable;
+        private final long mSequence = sSequence.getAndIncrement();
+        private volatile int mPriority;
+
+        private Task(Runnable runnable, int priority) {
+            mRunnable = runnable;
+            mPriority = priority;
+        }
+
+        @Override
+        public void run() {
+            mRunnable.run();
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (mPriority != other.mPriority) {
+                return mPriority < other.mPriority ? -1 : 1;
+            }
+            return mSequence < other.mSequence ? -1 : (mSequence == other.mSequence ? 0 : 1);
+        }
+    }
+
+    private DecodeScheduler() {
+    }
+
+    static void execute(Runnable runnable) {
+        schedule(runnable, PRIORITY_VISIBLE);
+    }
+
+    static Task schedule(Runnable runnable, int priority) {
+        Task task = new Task(runnable, priority);
+        sExecutor.execute(task);
+        return task;
+    }
+
+    /**
+     * Moves a queued task to a new priority. Tasks that already started are not affected.
+     */
+    static void reprioritize(Task task, int priority) {
+        if (task.mPriority == priority) {
+            return;
+        }
+        // The queue only orders tasks when they are inserted
+        if (sExecutor.getQueue().remove(task)) {
+            task.mPriority = priority;
+            sExecutor.execute(task);
+        }
+    }
+
+    /**
+     * Drops a task that has not started yet, so that it does not hold up other work.
+     */
+    static void cancel(Task task) {
+        sExecutor.remove(task);
+    }
+}
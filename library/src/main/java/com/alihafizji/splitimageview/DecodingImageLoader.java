@@ -0,0 +1,149 @@
+package com.alihafizji.splitimageview;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.content.res.Resources;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * The built-in {@link ImageLoader}. It decodes every kind of {@link ImageSource} itself,
+ * synchronously on the thread that asks for it, which is what {@link SplitImageView} does when
+ * no other loader is set. Custom loaders can delegate the sources they do not handle to it.
+ */
+public class DecodingImageLoader implements ImageLoader {
+
+    private static final String TAG = "DecodingImageLoader";
+
+    private final Context mContext;
+
+    public DecodingImageLoader(Context context) {
+        Context applicationContext = context.getApplicationContext();
+        mContext = applicationContext != null ? applicationContext : context;
+    }
+
+    @Override
+    public void load(LoadRequest request) {
+        request.deliver(decode(mContext, request.getSource(), request.getWidth(), request.getHeight()));
+    }
+
+    /**
+     * Decodes a source. Uris, file descriptors and buffers are subsampled to reqWidth x reqHeight
+     * when both are positive, resources are always loaded through Resources.
+     *
+     * @return The drawable, or null if the source could not be decoded
+     */
+    static Drawable decode(Context context, ImageSource source, int reqWidth, int reqHeight) {
+        final boolean subsample = reqWidth > 0 && reqHeight > 0;
+        switch (source.type) {
+            case ImageSource.TYPE_RESOURCE:
+                try {
+                    return context.getResources().getDrawable(source.resId);
+                } catch (Exception e) {
+                    Log.w(TAG, "Unable to find resource: " + source.resId, e);
+                    return null;
+                }
+            case ImageSource.TYPE_URI:
+                return decodeUri(context, source.uri, subsample, reqWidth, reqHeight);
+            default:
+                // File descriptors and buffers are decoded in place
+                return LayerDecoder.decodeSubsampled(context, source, subsample ? reqWidth : 0,
+                        subsample ? reqHeight : 0);
+        }
+    }
+
+    private static Drawable decodeUri(Context context, Uri uri, boolean subsample, int reqWidth, int reqHeight) {
+        String scheme = uri.getScheme();
+        if (ContentResolver.SCHEME_ANDROID_RESOURCE.equals(scheme)) {
+            try {
+                // Load drawable through Resources, to get the source density information
+                OpenResourceIdResult r = getResourceId(context, uri);
+                return r.r.getDrawable(r.id);
+            } catch (Exception e) {
+                Log.w(TAG, "Unable to open content: " + uri, e);
+                return null;
+            }
+        }
+
+        if (subsample) {
+            return LayerDecoder.decodeUri(context, uri, reqWidth, reqHeight);
+        }
+
+        if (ContentResolver.SCHEME_CONTENT.equals(scheme) || ContentResolver.SCHEME_FILE.equals(scheme)) {
+            InputStream stream = null;
+            try {
+                stream = context.getContentResolver().openInputStream(uri);
+                return OrientedDrawable.orient(Drawable.createFromStream(stream, null),
+                        LayerDecoder.readOrientation(context, uri));
+            } catch (Exception e) {
+                Log.w(TAG, "Unable to open content: " + uri, e);
+                return null;
+            } finally {
+                if (stream != null) {
+                    try {
+                        stream.close();
+                    } catch (IOException e) {
+                        Log.w(TAG, "Unable to close content: " + uri, e);
+                    }
+                }
+            }
+        }
+        return OrientedDrawable.orient(Drawable.createFromPath(uri.toString()),
+                LayerDecoder.readOrientation(context, uri));
+    }
+
+    private static OpenResourceIdResult getResourceId(Context context, Uri uri) throws FileNotFoundException {
+        String authority = uri.getAuthority();
+        Resources r;
+        if (TextUtils.isEmpty(authority)) {
+            throw new FileNotFoundException("No authority: " + uri);
+        } else {
+            try {
+                r = context.getPackageManager().getResourcesForApplication(authority);
+            } catch (PackageManager.NameNotFoundException ex) {
+                throw new FileNotFoundException("No package found for authority: " + uri);
+            }
+        }
+        List<String> path = uri.getPathSegments();
+        if (path == null) {
+            throw new FileNotFoundException("No path: " + uri);
+        }
+        int len = path.size();
+        int id;
+        if (len == 1) {
+            try {
+                id = Integer.parseInt(path.get(0));
+            } catch (NumberFormatException e) {
+                throw new FileNotFoundException("Single path segment is not a resource ID: " + uri);
+            }
+        } else if (len == 2) {
+            id = r.getIdentifier(path.get(1), path.get(0), authority);
+        } else {
+            throw new FileNotFoundException("More than two path segments: " + uri);
+        }
+        if (id == 0) {
+            throw new FileNotFoundException("No resource found for: " + uri);
+        }
+        OpenResourceIdResult res = new OpenResourceIdResult();
+        res.r = r;
+        res.id = id;
+        return res;
+    }
+
+    /**
+     * A resource identified by the {@link android.content.res.Resources} that contains it, and a resource id.
+     *
+     */
+    private static class OpenResourceIdResult {
+        public Resources r;
+        public int id;
+    }
+}
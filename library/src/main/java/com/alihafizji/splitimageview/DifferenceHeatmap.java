@@ -0,0 +1,98 @@
+package com.alihafizji.splitimageview;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Computes a heatmap of the per-pixel difference between two equally sized bitmaps. The rows
+ * are split into tiles that are processed in parallel, one thread per core.
+ */
+final class DifferenceHeatmap {
+
+    private static final int TILE_ROWS = 32;
+    private static final int HEATMAP_ALPHA = 180;
+    private static final int KEEP_ALIVE_SECONDS = 10;
+
+    private static final ThreadPoolExecutor sExecutor;
+
+    static {
+        // The threads are only needed while a heatmap is computed, so they do not outlive it
+        final int threadCount = Runtime.getRuntime().availableProcessors();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new BackgroundThreadFactory("SplitImageView heatmap"));
+        executor.allowCoreThreadTimeOut(true);
+        sExecutor = executor;
+    }
+
+    private DifferenceHeatmap() {
+    }
+
+    /**
+     * Blocks until the heatmap is computed, call it on a background thread.
+     *
+     * @param threshold Differences up to this value, per channel between 0 and 255, are
+     *                  left transparent
+     * @return A bitmap of the same size where differing pixels are colored from yellow, barely
+     * above the threshold, to red, completely different
+     */
+    static Bitmap compute(Bitmap foreground, Bitmap background, int threshold) throws InterruptedException {
+        final int width = foreground.getWidth();
+        final int height = foreground.getHeight();
+        if (background.getWidth() != width || background.getHeight() != height) {
+            throw new IllegalArgumentException("Both layers should have the same size");
+        }
+
+        final int[] foregroundPixels = new int[width * height];
+        final int[] backgroundPixels = new int[width * height];
+        final int[] heatmapPixels = new int[width * height];
+        foreground.getPixels(foregroundPixels, 0, width, 0, 0, width, height);
+        background.getPixels(backgroundPixels, 0, width, 0, 0, width, height);
+        final int[] colors = buildColorTable(threshold);
+
+        List<Callable<Void>> tiles = new ArrayList<Callable<Void>>();
+        for (int top = 0; top < height; top += TILE_ROWS) {
+            final int start = top * width;
+            final int end = Math.min(top + TILE_ROWS, height) * width;
+            tiles.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int i = start; i < end; i++) {
+                        heatmapPixels[i] = colors[difference(foregroundPixels[i], backgroundPixels[i])];
+                    }
+                    return null;
+                }
+            });
+        }
+        sExecutor.invokeAll(tiles);
+
+        return Bitmap.createBitmap(heatmapPixels, width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * The largest difference between the channels of two colors.
+     */
+    private static int difference(int a, int b) {
+        int alpha = Math.abs((a >>> 24) - (b >>> 24));
+        int red = Math.abs(((a >> 16) & 0xFF) - ((b >> 16) & 0xFF));
+        int green = Math.abs(((a >> 8) & 0xFF) - ((b >> 8) & 0xFF));
+        int blue = Math.abs((a & 0xFF) - (b & 0xFF));
+        return Math.max(Math.max(alpha, red), Math.max(green, blue));
+    }
+
+    private static int[] buildColorTable(int threshold) {
+        int[] colors = new int[256];
+        for (int difference = threshold + 1; difference < colors.length; difference++) {
+            float t = (difference - threshold) / (float) (255 - threshold);
+            colors[difference] = Color.argb(HEATMAP_ALPHA, 255, (int) (255 * (1 - t)), 0);
+        }
+        return colors;
+    }
+}
@@ -0,0 +1,105 @@
+package com.alihafizji.splitimageview;
+
+import android.animation.ValueAnimator;
+import android.content.Context;
+import android.os.PowerManager;
+import android.view.animation.AnimationUtils;
+
+import java.lang.reflect.Method;
+
+/**
+ * Drops split animation frames so that a {@link SplitImageView} is redrawn at most at a given
+ * frame rate. The animators keep running at the display rate, only the split updates, and with
+ * them the invalidations, are skipped.
+ */
+final class FrameRateLimiter {
+
+    static final int POWER_SAVE_FRAME_RATE = 15;
+    // Frames arrive with some jitter, without slack a 30 fps cap on a 60 Hz display drops to 20
+    private static final long FRAME_SLACK_MILLIS = 4;
+
+    private static Method sIsPowerSaveMode;
+    private static boolean sIsPowerSaveModeResolved;
+
+    private int mMaxFrameRate;
+    private boolean mPowerSaveAware;
+    private long mFrameIntervalMillis;
+    private long mLastFrameTime;
+
+    int getMaxFrameRate() {
+        return mMaxFrameRate;
+    }
+
+    /**
+     * @param maxFrameRate The maximum frame rate, 0 for no limit
+     */
+    void setMaxFrameRate(int maxFrameRate) {
+        mMaxFrameRate = maxFrameRate;
+    }
+
+    boolean isPowerSaveAware() {
+        return mPowerSaveAware;
+    }
+
+    void setPowerSaveAware(boolean powerSaveAware) {
+        mPowerSaveAware = powerSaveAware;
+    }
+
+    /**
+     * Called whenever an animation starts, picks the frame rate for it.
+     */
+    void reset(Context context) {
+        int frameRate = mMaxFrameRate;
+        if (mPowerSaveAware && isPowerSaveMode(context)) {
+            frameRate = frameRate > 0 ? Math.min(frameRate, POWER_SAVE_FRAME_RATE) : POWER_SAVE_FRAME_RATE;
+        }
+        mFrameIntervalMillis = frameRate > 0 ? 1000 / frameRate : 0;
+        mLastFrameTime = 0;
+    }
+
+    /**
+     * @return Whether the split should be updated for the current frame of the animation. The
+     * last frame is never dropped so that animations end on their final value.
+     */
+    boolean shouldUpdate(ValueAnimator animation) {
+        if (mFrameIntervalMillis == 0) {
+            return true;
+        }
+
+        long now = AnimationUtils.currentAnimationTimeMillis();
+        if (now - mLastFrameTime < mFrameIntervalMillis - FRAME_SLACK_MILLIS
+                && animation.getAnimatedFraction() < 1f) {
+            return false;
+        }
+        mLastFrameTime = now;
+        return true;
+    }
+
+    /**
+     * PowerManager.isPowerSaveMode() is only available from Lollipop on. Only called on the main
+     * thread.
+     */
+    private static boolean isPowerSaveMode(Context context) {
+        if (!sIsPowerSaveModeResolved) {
+            sIsPowerSaveModeResolved = true;
+            try {
+                sIsPowerSaveMode = PowerManager.class.getMethod("isPowerSaveMode");
+            } catch (NoSuchMethodException e) {
+                sIsPowerSaveMode = null;
+            }
+        }
+        if (sIsPowerSaveMode == null) {
+            return false;
+        }
+
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        if (powerManager == null) {
+            return false;
+        }
+        try {
+            return (Boolean) sIsPowerSaveMode.invoke(powerManager);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.alihafizji.splitimageview;
+
+/**
+ * Loads the images of {@link SplitImageView} layers. Implement it to let the image loading stack
+ * of the application, with its own caches, provide the layers instead of the view decoding them
+ * itself.
+ *
+ * A loader can be set for all views with {@link SplitImageView#setDefaultImageLoader(ImageLoader)}
+ * or for a single view with {@link SplitImageView#setImageLoader(ImageLoader)}. Without one the
+ * views decode their sources the way {@link DecodingImageLoader} does.
+ */
+public interface ImageLoader {
+
+    /**
+     * Starts loading the image of one layer. Called on the main thread.
+     *
+     * The result is handed to {@link LoadRequest#deliver(android.graphics.drawable.Drawable)} or
+     * {@link LoadRequest#deliver(android.graphics.Bitmap)}, either before this method returns or
+     * later from any thread.
+     *
+     * @param request The source and size to load, and the handle to deliver the result to
+     */
+    void load(LoadRequest request);
+}
@@ -0,0 +1,143 @@
+package com.alihafizji.splitimageview;
+
+import android.net.Uri;
+
+import java.io.FileDescriptor;
+import java.nio.ByteBuffer;
+
+/**
+ * Describes where the content of a {@link SplitImageView} layer comes from. Sources are
+ * immutable and compare equal when they point at the same content, so they can be used to
+ * detect unchanged layers when a view is rebound.
+ *
+ * A view may decode its sources again at any time, e.g. after releasing its layers to save
+ * memory, so file descriptors and buffers have to stay valid for as long as they are set.
+ */
+public final class ImageSource {
+
+    static final int TYPE_RESOURCE = 0;
+    static final int TYPE_URI = 1;
+    static final int TYPE_FILE_DESCRIPTOR = 2;
+    static final int TYPE_BYTE_BUFFER = 3;
+
+    final int type;
+    final int resId;
+    final Uri uri;
+    final FileDescriptor fileDescriptor;
+    final ByteBuffer buffer;
+    // The range of the file descriptor or buffer that holds the image
+    final long offset;
+    final long length;
+
+    private ImageSource(int type, int resId, Uri uri, FileDescriptor fileDescriptor, ByteBuffer buffer,
+                        long offset, long length) {
+        this.type = type;
+        this.resId = resId;
+        this.uri = uri;
+        this.fileDescriptor = fileDescriptor;
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * @param resId The identifier of a drawable resource
+     */
+    public static ImageSource fromResource(int resId) {
+        if (resId == 0) {
+            throw new IllegalArgumentException("Resource id should not be 0");
+        }
+        return new ImageSource(TYPE_RESOURCE, resId, null, null, null, 0, 0);
+    }
+
+    /**
+     * @param uri The Uri of an image, using the android.resource, content or file scheme or a plain path
+     */
+    public static ImageSource fromUri(Uri uri) {
+        if (uri == null) {
+            throw new NullPointerException();
+        }
+        return new ImageSource(TYPE_URI, 0, uri, null, null, 0, 0);
+    }
+
+    /**
+     * An image stored in a range of a file, e.g. one entry of a packed asset file opened with
+     * AssetFileDescriptor. The range is memory mapped when it is decoded, nothing is copied
+     * into temporary files or arrays. The file descriptor is not closed by the library.
+     *
+     * @param fileDescriptor A readable file descriptor
+     * @param offset The offset of the image in the file, in bytes
+     * @param length The length of the image, in bytes
+     */
+    public static ImageSource fromFileDescriptor(FileDescriptor fileDescriptor, long offset, long length) {
+        if (fileDescriptor == null) {
+            throw new NullPointerException();
+        }
+        if (offset < 0 || length <= 0) {
+            throw new IllegalArgumentException("Invalid file range, offset:" + offset + " length:" + length);
+        }
+        return new ImageSource(TYPE_FILE_DESCRIPTOR, 0, null, fileDescriptor, null, offset, length);
+    }
+
+    /**
+     * An encoded image held in memory, e.g. a direct buffer filled by native code. The bytes
+     * between the current position and the limit of the buffer are decoded straight from the
+     * buffer, its position and limit are not changed. Sources created from the same buffer are
+     * only equal if they were created with the same position and limit.
+     *
+     * @param buffer The buffer holding the encoded image
+     */
+    public static ImageSource fromByteBuffer(ByteBuffer buffer) {
+        if (buffer == null) {
+            throw new NullPointerException();
+        }
+        if (!buffer.hasRemaining()) {
+            throw new IllegalArgumentException("Buffer should not be empty");
+        }
+        return new ImageSource(TYPE_BYTE_BUFFER, 0, null, null, buffer, buffer.position(), buffer.remaining());
+    }
+
+    static boolean equals(ImageSource a, ImageSource b) {
+        return a == b || (a != null && a.equals(b));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ImageSource)) {
+            return false;
+        }
+        ImageSource other = (ImageSource) o;
+        // Descriptors and buffers are compared by identity, comparing their contents would cost
+        // as much as decoding them
+        return type == other.type && resId == other.resId
+                && (uri == null ? other.uri == null : uri.equals(other.uri))
+                && fileDescriptor == other.fileDescriptor && buffer == other.buffer
+                && offset == other.offset && length == other.length;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 31 * (31 * type + resId) + (uri == null ? 0 : uri.hashCode());
+        result = 31 * result + System.identityHashCode(fileDescriptor);
+        result = 31 * result + System.identityHashCode(buffer);
+        result = 31 * result + (int) (offset ^ (offset >>> 32));
+        return 31 * result + (int) (length ^ (length >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case TYPE_RESOURCE:
+                return "resource:" + resId;
+            case TYPE_FILE_DESCRIPTOR:
+                return fileDescriptor + "@" + offset + "+" + length;
+            case TYPE_BYTE_BUFFER:
+                return "buffer" + System.identityHashCode(buffer) + "@" + offset + "+" + length;
+            default:
+                return String.valueOf(uri);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.alihafizji.splitimageview;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Keeps the layer bitmaps of all {@link SplitImageView}s of the process within one memory
+ * budget. Whenever the layers of a view change and the total is over the budget, views that are
+ * not on screen are downgraded to layers decoded at a fraction of their size, least recently
+ * drawn first, and evicted if that is not enough. Views on screen are never touched.
+ *
+ * The total includes the layers retained across configuration changes. A bitmap shared by
+ * several views, e.g. through {@link LayerDecoder#copyLayer}, is counted once.
+ *
+ * Only used on the main thread. Views are held weakly.
+ */
+final class LayerBudget {
+
+    private static final int DEFAULT_MEMORY_FRACTION = 4;
+    // Downgraded layers are decoded at a quarter of their width and height
+    static final int DOWNGRADE_FACTOR = 4;
+
+    private static final WeakHashMap<SplitImageView, Boolean> sViews = new WeakHashMap<SplitImageView, Boolean>();
+    private static long sBudget = Runtime.getRuntime().maxMemory() / DEFAULT_MEMORY_FRACTION;
+    private static boolean sEnforcing;
+
+    private static final Comparator<SplitImageView> LEAST_RECENTLY_DRAWN = new Comparator<SplitImageView>() {
+        @Override
+        public int compare(SplitImageView a, SplitImageView b) {
+            long lhs = a.getLastDrawnTime();
+            long rhs = b.getLastDrawnTime();
+            return lhs < rhs ? -1 : (lhs == rhs ? 0 : 1);
+        }
+    };
+
+    private LayerBudget() {
+    }
+
+    static long getBudget() {
+        return sBudget;
+    }
+
+    /**
+     * @param budget The budget in bytes, 0 for no limit
+     */
+    static void setBudget(long budget) {
+        sBudget = budget;
+        enforce();
+    }
+
+    /**
+     * Called whenever the layers of a view change.
+     */
+    static void onLayersChanged(SplitImageView view) {
+        sViews.put(view, Boolean.TRUE);
+        enforce();
+    }
+
+    private static void enforce() {
+        if (sBudget <= 0 || sEnforcing) {
+            return;
+        }
+
+        Set<Bitmap> counted = newBitmapSet();
+        long total = LayerRetainer.getByteCount(counted);
+        for (SplitImageView view : sViews.keySet()) {
+            total += view.getLayerByteCount(counted);
+        }
+        if (total <= sBudget) {
+            return;
+        }
+
+        // Views that were never drawn are still being set up and are left alone
+        List<SplitImageView> candidates = new ArrayList<SplitImageView>();
+        for (SplitImageView view : sViews.keySet()) {
+            if (view.getLastDrawnTime() != 0 && view.getLayerByteCount() > 0 && !view.isOnScreen()) {
+                candidates.add(view);
+            }
+        }
+        Collections.sort(candidates, LEAST_RECENTLY_DRAWN);
+
+        // Evicting a view changes its layers, which would start another pass
+        sEnforcing = true;
+        try {
+            // Downgrading is tried on every candidate before anything is evicted. The bytes of a
+            // downgraded view only drop once its smaller layers are decoded, so the total is an
+            // estimate until then.
+            for (int i = 0; i < candidates.size() && total > sBudget; i++) {
+                SplitImageView view = candidates.get(i);
+                long bytes = view.getLayerByteCount();
+                if (view.downgradeLayers()) {
+                    total -= bytes - bytes / (DOWNGRADE_FACTOR * DOWNGRADE_FACTOR);
+                }
+            }
+            for (int i = 0; i < candidates.size() && total > sBudget; i++) {
+                SplitImageView view = candidates.get(i);
+                long bytes = view.getLayerByteCount();
+                view.evictLayers();
+                total -= bytes - view.getLayerByteCount();
+            }
+        } finally {
+            sEnforcing = false;
+        }
+    }
+
+    /**
+     * @return The bitmap a layer draws, or null if it does not draw a bitmap
+     */
+    static Bitmap getLayerBitmap(Drawable drawable) {
+        if (drawable instanceof OrientedDrawable) {
+            drawable = ((OrientedDrawable) drawable).getWrappedDrawable();
+        }
+        return drawable instanceof BitmapDrawable ? ((BitmapDrawable) drawable).getBitmap() : null;
+    }
+
+    static long getByteCount(Bitmap bitmap) {
+        return bitmap == null ? 0 : (long) bitmap.getRowBytes() * bitmap.getHeight();
+    }
+
+    /**
+     * @return A set for {@link #count}, bitmaps are compared by identity
+     */
+    static Set<Bitmap> newBitmapSet() {
+        return Collections.newSetFromMap(new IdentityHashMap<Bitmap, Boolean>());
+    }
+
+    /**
+     * @return The bytes of a bitmap if it was not counted yet, adding it to the counted ones
+     */
+    static long count(Set<Bitmap> counted, Bitmap bitmap) {
+        return bitmap != null && counted.add(bitmap) ? getByteCount(bitmap) : 0;
+    }
+}
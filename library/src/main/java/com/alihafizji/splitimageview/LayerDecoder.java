@@ -0,0 +1,336 @@
+package com.alihafizji.splitimageview;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.drawable.Drawable;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Decodes layer images subsampled to the size they will be displayed at.
+ */
+final class LayerDecoder {
+
+    private static final String TAG = "LayerDecoder";
+    private static final float THUMBNAIL_ASPECT_TOLERANCE = 0.02f;
+
+    private LayerDecoder() {
+    }
+
+    /**
+     * Decodes a content, file or path Uri so that the result is at least reqWidth x reqHeight
+     * pixels, or full size if either requested dimension is not positive. The result is shown
+     * in the EXIF orientation of the image.
+     *
+     * @return The decoded drawable, or null if the Uri could not be decoded
+     */
+    static Drawable decodeUri(Context context, Uri uri, int reqWidth, int reqHeight) {
+        try {
+            final int orientation = readOrientation(context, uri);
+            if (OrientedDrawable.swapsDimensions(orientation)) {
+                // The requested size is that of the oriented image
+                int swap = reqWidth;
+                reqWidth = reqHeight;
+                reqHeight = swap;
+            }
+
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            decodeStream(context, uri, options);
+            if (options.outWidth <= 0 || options.outHeight <= 0) {
+                return null;
+            }
+
+            final int sourceWidth = options.outWidth;
+            final int sourceHeight = options.outHeight;
+            options.inJustDecodeBounds = false;
+            options.inSampleSize = calculateInSampleSize(sourceWidth, sourceHeight, reqWidth, reqHeight);
+
+            Bitmap bitmap = decodeStream(context, uri, options);
+            if (bitmap == null) {
+                return null;
+            }
+            // No resources, to keep the intrinsic size in line with Drawable.createFromStream
+            return OrientedDrawable.orient(new SampledBitmapDrawable(null, bitmap, sourceWidth, sourceHeight),
+                    orientation);
+        } catch (Exception e) {
+            Log.w(TAG, "Unable to open content: " + uri, e);
+            return null;
+        }
+    }
+
+    /**
+     * Decodes a cheap preview of a content, file or path Uri that is at least
+     * previewWidth x previewHeight pixels. The embedded EXIF thumbnail of a local file is used
+     * when its aspect ratio matches the image, otherwise the image is decoded heavily
+     * subsampled. The preview reports the intrinsic size of the full image and is shown in its
+     * EXIF orientation.
+     *
+     * @return The preview drawable, or null if the Uri could not be decoded
+     */
+    static Drawable decodePreview(Context context, Uri uri, int previewWidth, int previewHeight) {
+        try {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            decodeStream(context, uri, options);
+            if (options.outWidth <= 0 || options.outHeight <= 0) {
+                return null;
+            }
+
+            final int sourceWidth = options.outWidth;
+            final int sourceHeight = options.outHeight;
+            final int orientation = readOrientation(context, uri);
+            final boolean swapsDimensions = OrientedDrawable.swapsDimensions(orientation);
+
+            Bitmap bitmap = decodeExifThumbnail(uri, sourceWidth, sourceHeight);
+            if (bitmap == null) {
+                options.inJustDecodeBounds = false;
+                options.inSampleSize = calculateInSampleSize(sourceWidth, sourceHeight,
+                        swapsDimensions ? previewHeight : previewWidth,
+                        swapsDimensions ? previewWidth : previewHeight);
+                bitmap = decodeStream(context, uri, options);
+            }
+            if (bitmap == null) {
+                return null;
+            }
+            return OrientedDrawable.orient(new SampledBitmapDrawable(null, bitmap, sourceWidth, sourceHeight),
+                    orientation);
+        } catch (Exception e) {
+            Log.w(TAG, "Unable to open content: " + uri, e);
+            return null;
+        }
+    }
+
+    private static Bitmap decodeExifThumbnail(Uri uri, int sourceWidth, int sourceHeight) {
+        String path = getLocalPath(uri);
+        if (path == null) {
+            return null;
+        }
+
+        try {
+            byte[] thumbnail = new ExifInterface(path).getThumbnail();
+            if (thumbnail == null) {
+                return null;
+            }
+            Bitmap bitmap = BitmapFactory.decodeByteArray(thumbnail, 0, thumbnail.length, null);
+            if (bitmap == null) {
+                return null;
+            }
+            // Thumbnails are often letterboxed to 4:3, which would distort the preview
+            float sourceAspect = sourceWidth / (float) sourceHeight;
+            float thumbnailAspect = bitmap.getWidth() / (float) bitmap.getHeight();
+            if (Math.abs(sourceAspect - thumbnailAspect) > sourceAspect * THUMBNAIL_ASPECT_TOLERANCE) {
+                bitmap.recycle();
+                return null;
+            }
+            return bitmap;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns a new drawable for the bitmap of a decoded layer, so that one decode can be shown
+     * by several views, each with its own bounds, color filter and alpha.
+     *
+     * @return The copy, or null if drawable is null or cannot be copied
+     */
+    static Drawable copyLayer(Drawable drawable) {
+        if (drawable instanceof OrientedDrawable) {
+            OrientedDrawable oriented = (OrientedDrawable) drawable;
+            return OrientedDrawable.orient(copyLayer(oriented.getWrappedDrawable()), oriented.getOrientation());
+        }
+        if (drawable instanceof SampledBitmapDrawable) {
+            SampledBitmapDrawable sampled = (SampledBitmapDrawable) drawable;
+            return new SampledBitmapDrawable(null, sampled.getBitmap(), sampled.getSourceWidth(),
+                    sampled.getSourceHeight());
+        }
+        if (drawable == null || drawable.getConstantState() == null) {
+            return null;
+        }
+        return drawable.getConstantState().newDrawable();
+    }
+
+    /**
+     * Reads the EXIF orientation of a local file, or the rotation MediaStore recorded for a
+     * content Uri.
+     *
+     * @return One of the ExifInterface.ORIENTATION_ constants
+     */
+    static int readOrientation(Context context, Uri uri) {
+        String path = getLocalPath(uri);
+        if (path != null) {
+            try {
+                return new ExifInterface(path).getAttributeInt(ExifInterface.TAG_ORIENTATION,
+                        ExifInterface.ORIENTATION_NORMAL);
+            } catch (IOException e) {
+                return ExifInterface.ORIENTATION_NORMAL;
+            }
+        }
+
+        if (!ContentResolver.SCHEME_CONTENT.equals(uri.getScheme())) {
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+        Cursor cursor = null;
+        try {
+            cursor = context.getContentResolver().query(uri,
+                    new String[] {MediaStore.Images.ImageColumns.ORIENTATION}, null, null, null);
+            if (cursor != null && cursor.moveToFirst()) {
+                // Only rotations are recorded, never flips
+                switch (cursor.getInt(0)) {
+                    case 90:
+                        return ExifInterface.ORIENTATION_ROTATE_90;
+                    case 180:
+                        return ExifInterface.ORIENTATION_ROTATE_180;
+                    case 270:
+                        return ExifInterface.ORIENTATION_ROTATE_270;
+                }
+            }
+        } catch (Exception e) {
+            // Not a MediaStore Uri, the provider does not know the column
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return ExifInterface.ORIENTATION_NORMAL;
+    }
+
+    private static String getLocalPath(Uri uri) {
+        String scheme = uri.getScheme();
+        if (ContentResolver.SCHEME_FILE.equals(scheme)) {
+            return uri.getPath();
+        } else if (scheme == null) {
+            return uri.toString();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the largest power of two sample size that keeps both dimensions of the decoded
+     * image at or above the requested ones.
+     */
+    static int calculateInSampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int inSampleSize = 1;
+        if (reqWidth <= 0 || reqHeight <= 0) {
+            return inSampleSize;
+        }
+
+        while ((width / (inSampleSize * 2)) >= reqWidth && (height / (inSampleSize * 2)) >= reqHeight) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    /**
+     * Decodes any source into a bitmap of its pixel size, without applying resource densities.
+     * With inJustDecodeBounds set only the size is read into options.
+     *
+     * @return The bitmap, or null if the source could not be decoded or only its size was read
+     */
+    static Bitmap decodeSource(Context context, ImageSource source, BitmapFactory.Options options)
+            throws IOException {
+        switch (source.type) {
+            case ImageSource.TYPE_RESOURCE:
+                return decodeStream(context.getResources().openRawResource(source.resId), source, options);
+            case ImageSource.TYPE_FILE_DESCRIPTOR:
+                return decodeBuffer(mapFileDescriptor(source), options);
+            case ImageSource.TYPE_BYTE_BUFFER:
+                return decodeBuffer(sliceBuffer(source), options);
+            default:
+                return decodeStream(context, source.uri, options);
+        }
+    }
+
+    /**
+     * Decodes a file descriptor or buffer source so that the result is at least
+     * reqWidth x reqHeight pixels, or full size if either requested dimension is not positive.
+     *
+     * @return The decoded drawable, or null if the source could not be decoded
+     */
+    static Drawable decodeSubsampled(Context context, ImageSource source, int reqWidth, int reqHeight) {
+        try {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            decodeSource(context, source, options);
+            if (options.outWidth <= 0 || options.outHeight <= 0) {
+                return null;
+            }
+
+            final int sourceWidth = options.outWidth;
+            final int sourceHeight = options.outHeight;
+            options.inJustDecodeBounds = false;
+            options.inSampleSize = calculateInSampleSize(sourceWidth, sourceHeight, reqWidth, reqHeight);
+
+            Bitmap bitmap = decodeSource(context, source, options);
+            if (bitmap == null) {
+                return null;
+            }
+            return new SampledBitmapDrawable(null, bitmap, sourceWidth, sourceHeight);
+        } catch (Exception e) {
+            Log.w(TAG, "Unable to decode: " + source, e);
+            return null;
+        }
+    }
+
+    private static Bitmap decodeBuffer(ByteBuffer buffer, BitmapFactory.Options options) {
+        if (buffer.hasArray()) {
+            return BitmapFactory.decodeByteArray(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                    buffer.remaining(), options);
+        }
+        return BitmapFactory.decodeStream(new ByteBufferInputStream(buffer), null, options);
+    }
+
+    private static ByteBuffer mapFileDescriptor(ImageSource source) throws IOException {
+        // The stream is not closed, that would close the file descriptor of the caller. The
+        // mapping stays valid on its own.
+        FileChannel channel = new FileInputStream(source.fileDescriptor).getChannel();
+        return channel.map(FileChannel.MapMode.READ_ONLY, source.offset, source.length);
+    }
+
+    private static ByteBuffer sliceBuffer(ImageSource source) {
+        // A duplicate shares the content but not the position and limit of the caller's buffer
+        ByteBuffer buffer = source.buffer.duplicate();
+        buffer.clear();
+        buffer.position((int) source.offset);
+        buffer.limit((int) (source.offset + source.length));
+        return buffer;
+    }
+
+    private static Bitmap decodeStream(Context context, Uri uri, BitmapFactory.Options options)
+            throws IOException {
+        return decodeStream(openStream(context, uri), uri, options);
+    }
+
+    private static Bitmap decodeStream(InputStream stream, Object source, BitmapFactory.Options options) {
+        try {
+            return BitmapFactory.decodeStream(stream, null, options);
+        } finally {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Unable to close content: " + source, e);
+            }
+        }
+    }
+
+    private static InputStream openStream(Context context, Uri uri) throws IOException {
+        String scheme = uri.getScheme();
+        if (ContentResolver.SCHEME_CONTENT.equals(scheme) || ContentResolver.SCHEME_FILE.equals(scheme)
+                || ContentResolver.SCHEME_ANDROID_RESOURCE.equals(scheme)) {
+            return context.getContentResolver().openInputStream(uri);
+        }
+        return new FileInputStream(uri.toString());
+    }
+}
@@ -0,0 +1,74 @@
+package com.alihafizji.splitimageview;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+
+/**
+ * Decodes the full resolution image of one layer in the background and hands it back to its
+ * {@link SplitImageView} on the main thread. Tasks for the same Uri and size share a single
+ * {@link SharedDecode}.
+ */
+final class LayerLoadTask {
+
+    private final SplitImageView mView;
+    private final Context mContext;
+    private final Uri mUri;
+    final boolean mForeground;
+    private final int mReqWidth;
+    private final int mReqHeight;
+    private int mPriority;
+    private SharedDecode mDecode;
+
+    /**
+     * @param priority One of the DecodeScheduler.PRIORITY_ constants
+     */
+    LayerLoadTask(SplitImageView view, Uri uri, boolean foreground, int reqWidth, int reqHeight, int priority) {
+        mView = view;
+        Context applicationContext = view.getContext().getApplicationContext();
+        mContext = applicationContext != null ? applicationContext : view.getContext();
+        mUri = uri;
+        mForeground = foreground;
+        mReqWidth = reqWidth;
+        mReqHeight = reqHeight;
+        mPriority = priority;
+    }
+
+    int getPriority() {
+        return mPriority;
+    }
+
+    /**
+     * Must be called on the main thread, e.g. when the view scrolls into or out of view.
+     */
+    void setPriority(int priority) {
+        if (mPriority != priority) {
+            mPriority = priority;
+            if (mDecode != null) {
+                mDecode.onPriorityChanged();
+            }
+        }
+    }
+
+    void start() {
+        mDecode = SharedDecode.join(mContext, mUri, mReqWidth, mReqHeight, this);
+    }
+
+    /**
+     * Must be called on the main thread. The view is not called back once this returns.
+     */
+    void cancel() {
+        if (mDecode != null) {
+            mDecode.leave(this);
+            mDecode = null;
+        }
+    }
+
+    /**
+     * Called on the main thread with the decoded drawable, or null if decoding failed.
+     */
+    void onDecoded(Drawable drawable) {
+        mDecode = null;
+        mView.onLayerLoaded(this, drawable);
+    }
+}
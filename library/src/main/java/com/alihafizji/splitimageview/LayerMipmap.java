@@ -0,0 +1,114 @@
+package com.alihafizji.splitimageview;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Progressively halved copies of a layer bitmap, so that a layer displayed at a fraction of its
+ * size, e.g. a large image while a {@link SplitImageView} is zoomed out, is drawn from a bitmap
+ * close to its displayed size instead of being downscaled heavily, and aliased, on every frame.
+ *
+ * Levels are built on the decode threads when they are first needed, until then the closest
+ * finer level is drawn. All levels together take a third of the memory of the bitmap. Everything
+ * but building the levels happens on the main thread.
+ */
+final class LayerMipmap {
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+    private static final int MAX_LEVEL = 6;
+
+    private final Bitmap mSource;
+    private final Runnable mOnLevelsReady;
+    // Level 0 is the source, each level is half the size of the one before
+    private final Bitmap[] mLevels = new Bitmap[MAX_LEVEL + 1];
+    private int mRequestedLevel;
+    private volatile boolean mReleased;
+
+    /**
+     * @param onLevelsReady Run on the main thread whenever new levels have been built
+     */
+    LayerMipmap(Bitmap source, Runnable onLevelsReady) {
+        mSource = source;
+        mOnLevelsReady = onLevelsReady;
+        mLevels[0] = source;
+    }
+
+    Bitmap getSource() {
+        return mSource;
+    }
+
+    /**
+     * @return The smallest level that is at least the displayed size, or the closest finer
+     * level while that one is being built
+     */
+    Bitmap select(float displayedWidth, float displayedHeight) {
+        int level = 0;
+        while (level < MAX_LEVEL
+                && (mSource.getWidth() >> (level + 1)) >= displayedWidth
+                && (mSource.getHeight() >> (level + 1)) >= displayedHeight) {
+            level++;
+        }
+
+        int available = level;
+        while (mLevels[available] == null) {
+            available--;
+        }
+        if (available < level && level > mRequestedLevel) {
+            buildLevels(available, level);
+        }
+        return mLevels[available];
+    }
+
+    long getByteCount() {
+        long bytes = 0;
+        for (int i = 1; i <= MAX_LEVEL; i++) {
+            bytes += LayerBudget.getByteCount(mLevels[i]);
+        }
+        return bytes;
+    }
+
+    /**
+     * Drops the levels and abandons any that are still being built.
+     */
+    void release() {
+        mReleased = true;
+        for (int i = 1; i <= MAX_LEVEL; i++) {
+            mLevels[i] = null;
+        }
+    }
+
+    private void buildLevels(final int from, final int to) {
+        mRequestedLevel = to;
+        final Bitmap start = mLevels[from];
+        DecodeScheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap[] built = new Bitmap[to - from];
+                Bitmap previous = start;
+                try {
+                    for (int i = 0; i < built.length && !mReleased; i++) {
+                        // Halving with filtering averages every source pixel, unlike one large step
+                        previous = Bitmap.createScaledBitmap(previous, Math.max(1, previous.getWidth() / 2),
+                                Math.max(1, previous.getHeight() / 2), true);
+                        built[i] = previous;
+                    }
+                } catch (OutOfMemoryError e) {
+                    // Keep the levels built so far, the finer ones are drawn instead
+                }
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mReleased) {
+                            return;
+                        }
+                        for (int i = 0; i < built.length && built[i] != null; i++) {
+                            mLevels[from + 1 + i] = built[i];
+                        }
+                        mOnLevelsReady.run();
+                    }
+                });
+            }
+        });
+    }
+}
@@ -0,0 +1,121 @@
+package com.alihafizji.splitimageview;
+
+import android.content.ComponentCallbacks2;
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.media.ExifInterface;
+import android.util.LruCache;
+
+import java.util.Set;
+
+/**
+ * Holds the decoded layers of views that saved their state, so that the views recreated after
+ * a configuration change can take them over instead of decoding their sources again.
+ *
+ * Only layers decoded from content and file Uris are retained, resources, including android.resource
+ * Uris, are cached by the framework and keep their density that way. A layer is
+ * handed to the first view that asks for its source, and layers nobody asks for are dropped
+ * least recently retained first or once the application is hidden.
+ */
+final class LayerRetainer {
+
+    private static final int MEMORY_FRACTION = 8;
+
+    private static final LruCache<ImageSource, Layer> sLayers =
+            new LruCache<ImageSource, Layer>((int) (Runtime.getRuntime().maxMemory() / 1024 / MEMORY_FRACTION)) {
+                @Override
+                protected int sizeOf(ImageSource key, Layer layer) {
+                    return Math.max(1, layer.bitmap.getRowBytes() * layer.bitmap.getHeight() / 1024);
+                }
+            };
+
+    private static final class Layer {
+        final Bitmap bitmap;
+        final int sourceWidth;
+        final int sourceHeight;
+        final int orientation;
+
+        Layer(Bitmap bitmap, int sourceWidth, int sourceHeight, int orientation) {
+            this.bitmap = bitmap;
+            this.sourceWidth = sourceWidth;
+            this.sourceHeight = sourceHeight;
+            this.orientation = orientation;
+        }
+    }
+
+    private LayerRetainer() {
+    }
+
+    /**
+     * Retains the layer decoded from the given source, if it can be taken over later.
+     */
+    static void retain(ImageSource source, Drawable drawable) {
+        int orientation = ExifInterface.ORIENTATION_NORMAL;
+        if (drawable instanceof OrientedDrawable) {
+            orientation = ((OrientedDrawable) drawable).getOrientation();
+            drawable = ((OrientedDrawable) drawable).getWrappedDrawable();
+        }
+        if (source == null || source.type != ImageSource.TYPE_URI || !(drawable instanceof BitmapDrawable)
+                || ContentResolver.SCHEME_ANDROID_RESOURCE.equals(source.uri.getScheme())) {
+            return;
+        }
+        Bitmap bitmap = ((BitmapDrawable) drawable).getBitmap();
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+
+        if (drawable instanceof SampledBitmapDrawable) {
+            SampledBitmapDrawable sampled = (SampledBitmapDrawable) drawable;
+            sLayers.put(source, new Layer(bitmap, sampled.getSourceWidth(), sampled.getSourceHeight(),
+                    orientation));
+        } else {
+            sLayers.put(source, new Layer(bitmap, bitmap.getWidth(), bitmap.getHeight(), orientation));
+        }
+    }
+
+    /**
+     * Takes the retained layer of a source if it has at least the resolution a decode for
+     * reqWidth x reqHeight would produce.
+     *
+     * @return A new drawable for the retained layer, or null if there is none
+     */
+    static Drawable take(ImageSource source, int reqWidth, int reqHeight) {
+        Layer layer = sLayers.remove(source);
+        if (layer == null || layer.bitmap.isRecycled()) {
+            return null;
+        }
+
+        boolean swapsDimensions = OrientedDrawable.swapsDimensions(layer.orientation);
+        int inSampleSize = LayerDecoder.calculateInSampleSize(layer.sourceWidth, layer.sourceHeight,
+                swapsDimensions ? reqHeight : reqWidth, swapsDimensions ? reqWidth : reqHeight);
+        if (layer.bitmap.getWidth() < layer.sourceWidth / inSampleSize
+                || layer.bitmap.getHeight() < layer.sourceHeight / inSampleSize) {
+            return null;
+        }
+        // Same as the decoders, so the taken layer has the intrinsic size it had before
+        return OrientedDrawable.orient(
+                new SampledBitmapDrawable(null, layer.bitmap, layer.sourceWidth, layer.sourceHeight),
+                layer.orientation);
+    }
+
+    /**
+     * @param counted Bitmaps counted so far, the retained bitmaps are added to it
+     * @return The bytes of the retained bitmaps that were not counted yet
+     */
+    static long getByteCount(Set<Bitmap> counted) {
+        long bytes = 0;
+        for (Layer layer : sLayers.snapshot().values()) {
+            bytes += LayerBudget.count(counted, layer.bitmap);
+        }
+        return bytes;
+    }
+
+    static void onTrimMemory(int level) {
+        // A configuration change never hides the application, layers retained before it are stale
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            sLayers.evictAll();
+        }
+    }
+}
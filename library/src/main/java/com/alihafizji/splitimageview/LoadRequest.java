@@ -0,0 +1,122 @@
+package com.alihafizji.splitimageview;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * A request an {@link ImageLoader} receives for the image of one {@link SplitImageView} layer.
+ *
+ * The request is cancelled when the layer is replaced or cleared before the image is delivered.
+ * Results delivered after that are dropped, so loaders only need to check
+ * {@link #isCancelled()} or listen for cancellation to avoid wasted work.
+ */
+public final class LoadRequest {
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    private final SplitImageView mView;
+    private final ImageSource mSource;
+    private final int mWidth;
+    private final int mHeight;
+    final boolean mForeground;
+    private volatile boolean mCancelled;
+    private volatile boolean mDelivered;
+    private Runnable mCancelListener;
+
+    LoadRequest(SplitImageView view, ImageSource source, boolean foreground, int width, int height) {
+        mView = view;
+        mSource = source;
+        mForeground = foreground;
+        mWidth = width;
+        mHeight = height;
+    }
+
+    public ImageSource getSource() {
+        return mSource;
+    }
+
+    /**
+     * Returns the width the image is displayed at, or 0 when it is not known yet or the image is
+     * shown at full size. Images can be delivered at any size, they are scaled to fit.
+     */
+    public int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * @see #getWidth()
+     */
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * Sets a listener that is run on the main thread when the request is cancelled, or right
+     * away if it already is. Must be called on the main thread.
+     */
+    public void setOnCancelListener(Runnable listener) {
+        if (mCancelled) {
+            if (listener != null) {
+                listener.run();
+            }
+            return;
+        }
+        mCancelListener = listener;
+    }
+
+    /**
+     * Delivers the loaded image, or null if it could not be loaded. Only the first delivery of
+     * a request is used. Can be called on any thread.
+     */
+    public void deliver(final Drawable drawable) {
+        if (mCancelled || mDelivered) {
+            return;
+        }
+        mDelivered = true;
+
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            mView.onImageLoaded(this, drawable);
+        } else {
+            sMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (!mCancelled) {
+                        mView.onImageLoaded(LoadRequest.this, drawable);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Delivers the loaded image, or null if it could not be loaded.
+     *
+     * @see #deliver(android.graphics.drawable.Drawable)
+     */
+    public void deliver(Bitmap bitmap) {
+        // No resources, to keep the intrinsic size in line with the view's own decoding
+        deliver(bitmap == null ? null : new BitmapDrawable(null, bitmap));
+    }
+
+    /**
+     * Must be called on the main thread.
+     */
+    void cancel() {
+        if (mCancelled) {
+            return;
+        }
+        mCancelled = true;
+        Runnable listener = mCancelListener;
+        mCancelListener = null;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+}
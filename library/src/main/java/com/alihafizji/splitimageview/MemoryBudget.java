@@ -0,0 +1,38 @@
+package com.alihafizji.splitimageview;
+
+/**
+ * A blocking byte budget. Callers reserve what they are about to allocate and wait while the
+ * budget is exhausted.
+ */
+final class MemoryBudget {
+
+    private final long mCapacity;
+    private long mUsed;
+
+    MemoryBudget(long capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Memory budget should be positive and not:" + capacity);
+        }
+        mCapacity = capacity;
+    }
+
+    /**
+     * Blocks until the bytes fit into the budget. A request larger than the whole budget is
+     * granted the whole budget, so it runs alone instead of waiting forever.
+     *
+     * @return The number of bytes reserved, to be passed to {@link #release(long)}
+     */
+    synchronized long acquire(long bytes) throws InterruptedException {
+        long granted = Math.min(bytes, mCapacity);
+        while (mUsed + granted > mCapacity) {
+            wait();
+        }
+        mUsed += granted;
+        return granted;
+    }
+
+    synchronized void release(long bytes) {
+        mUsed -= bytes;
+        notifyAll();
+    }
+}
@@ -0,0 +1,186 @@
+package com.alihafizji.splitimageview;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.media.ExifInterface;
+
+/**
+ * Shows a layer in its EXIF orientation. The rotation or flip is applied to the canvas when
+ * drawing, so the decoded bitmap is never copied, and the intrinsic size is that of the oriented
+ * image.
+ */
+class OrientedDrawable extends Drawable implements Drawable.Callback {
+
+    private final Drawable mDrawable;
+    private final int mOrientation;
+    private final Matrix mMatrix = new Matrix();
+
+    /**
+     * @param orientation One of the ExifInterface.ORIENTATION_ constants other than normal
+     */
+    OrientedDrawable(Drawable drawable, int orientation) {
+        mDrawable = drawable;
+        mOrientation = orientation;
+        drawable.setCallback(this);
+    }
+
+    /**
+     * Wraps a drawable unless the orientation leaves it as it is.
+     */
+    static Drawable orient(Drawable drawable, int orientation) {
+        if (drawable == null || orientation <= ExifInterface.ORIENTATION_NORMAL
+                || orientation > ExifInterface.ORIENTATION_ROTATE_270) {
+            return drawable;
+        }
+        return new OrientedDrawable(drawable, orientation);
+    }
+
+    static boolean swapsDimensions(int orientation) {
+        return orientation >= ExifInterface.ORIENTATION_TRANSPOSE
+                && orientation <= ExifInterface.ORIENTATION_ROTATE_270;
+    }
+
+    Drawable getWrappedDrawable() {
+        return mDrawable;
+    }
+
+    int getOrientation() {
+        return mOrientation;
+    }
+
+    /**
+     * @return The matrix the wrapped drawable is drawn through, valid once bounds are set
+     */
+    Matrix getOrientationMatrix() {
+        return mMatrix;
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return swapsDimensions(mOrientation) ? mDrawable.getIntrinsicHeight() : mDrawable.getIntrinsicWidth();
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return swapsDimensions(mOrientation) ? mDrawable.getIntrinsicWidth() : mDrawable.getIntrinsicHeight();
+    }
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        // The wrapped drawable is laid out unrotated, the matrix turns it into these bounds
+        final int width = swapsDimensions(mOrientation) ? bounds.height() : bounds.width();
+        final int height = swapsDimensions(mOrientation) ? bounds.width() : bounds.height();
+        mDrawable.setBounds(0, 0, width, height);
+        setOrientationMatrix(mMatrix, mOrientation, width, height);
+        mMatrix.postTranslate(bounds.left, bounds.top);
+    }
+
+    /**
+     * Sets the matrix that turns an image of width x height, as it was decoded, into the given
+     * orientation with its top left corner at the origin.
+     */
+    static void setOrientationMatrix(Matrix matrix, int orientation, int width, int height) {
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.setScale(-1, 1);
+                matrix.postTranslate(width, 0);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.setRotate(180);
+                matrix.postTranslate(width, height);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.setScale(1, -1);
+                matrix.postTranslate(0, height);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.setRotate(90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.setRotate(90);
+                matrix.postTranslate(height, 0);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.setRotate(-90);
+                matrix.postScale(-1, 1);
+                matrix.postTranslate(height, width);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.setRotate(270);
+                matrix.postTranslate(0, width);
+                break;
+            default:
+                matrix.reset();
+                break;
+        }
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        int saveCount = canvas.save();
+        canvas.concat(mMatrix);
+        mDrawable.draw(canvas);
+        canvas.restoreToCount(saveCount);
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        mDrawable.setAlpha(alpha);
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter cf) {
+        mDrawable.setColorFilter(cf);
+    }
+
+    @Override
+    public int getOpacity() {
+        return mDrawable.getOpacity();
+    }
+
+    @Override
+    public boolean setVisible(boolean visible, boolean restart) {
+        mDrawable.setVisible(visible, restart);
+        return super.setVisible(visible, restart);
+    }
+
+    @Override
+    public boolean isStateful() {
+        return mDrawable.isStateful();
+    }
+
+    @Override
+    protected boolean onStateChange(int[] state) {
+        return mDrawable.setState(state);
+    }
+
+    @Override
+    protected boolean onLevelChange(int level) {
+        return mDrawable.setLevel(level);
+    }
+
+    @Override
+    public Drawable mutate() {
+        mDrawable.mutate();
+        return this;
+    }
+
+    @Override
+    public void invalidateDrawable(Drawable who) {
+        invalidateSelf();
+    }
+
+    @Override
+    public void scheduleDrawable(Drawable who, Runnable what, long when) {
+        scheduleSelf(what, when);
+    }
+
+    @Override
+    public void unscheduleDrawable(Drawable who, Runnable what) {
+        unscheduleSelf(what);
+    }
+}
@@ -0,0 +1,66 @@
+package com.alihafizji.splitimageview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.util.Log;
+
+import java.util.Arrays;
+
+/**
+ * A layer drawable rendered once into a bitmap of the size of its bounds, so that drawing the
+ * layer is a bitmap blit instead of rasterizing shapes, gradients or nine-patches every frame.
+ * The bitmap is rendered again when the bounds, state or level of the drawable change, or when
+ * it is invalidated.
+ */
+final class RasterizedLayer {
+
+    private static final String TAG = "RasterizedLayer";
+
+    private Bitmap mBitmap;
+    private final Rect mBounds = new Rect();
+    private int[] mState;
+    private int mLevel;
+
+    /**
+     * @return The rendered drawable, or null if it could not be rendered
+     */
+    Bitmap get(Drawable drawable) {
+        final Rect bounds = drawable.getBounds();
+        if (mBitmap != null && mBounds.equals(bounds) && mLevel == drawable.getLevel()
+                && Arrays.equals(mState, drawable.getState())) {
+            return mBitmap;
+        }
+
+        invalidate();
+        if (bounds.isEmpty()) {
+            return null;
+        }
+
+        Bitmap bitmap;
+        try {
+            bitmap = Bitmap.createBitmap(bounds.width(), bounds.height(), Bitmap.Config.ARGB_8888);
+        } catch (OutOfMemoryError e) {
+            Log.w(TAG, "Unable to rasterize a layer of " + bounds.width() + "x" + bounds.height());
+            return null;
+        }
+        Canvas canvas = new Canvas(bitmap);
+        canvas.translate(-bounds.left, -bounds.top);
+        drawable.draw(canvas);
+
+        mBitmap = bitmap;
+        mBounds.set(bounds);
+        mState = drawable.getState().clone();
+        mLevel = drawable.getLevel();
+        return bitmap;
+    }
+
+    Bitmap getBitmap() {
+        return mBitmap;
+    }
+
+    void invalidate() {
+        mBitmap = null;
+    }
+}
@@ -0,0 +1,199 @@
+package com.alihafizji.splitimageview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The area of the background a {@link SplitImageView} in brush reveal mode has painted into
+ * view. Brush strokes are drawn into an ALPHA_8 mask segment by segment as they come in, and
+ * each segment reports the rect it touched so only that part of the foreground is composited
+ * with the mask again.
+ *
+ * Strokes are kept as their points, undoing one clears the mask and replays the others. The
+ * revealed fraction is counted on a copy of the mask at a quarter of its size. Only used on the
+ * main thread.
+ */
+final class RevealMask {
+
+    private static final int PROGRESS_SCALE = 4;
+    // A pixel of the progress mask counts as revealed once it is at least half covered
+    private static final int REVEALED_ALPHA = 128;
+
+    private final Bitmap mMask;
+    private final Canvas mMaskCanvas;
+    private final Bitmap mProgressMask;
+    private final Canvas mProgressCanvas;
+    private final Paint mBrushPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mDotPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final List<Stroke> mStrokes = new ArrayList<Stroke>();
+    private ByteBuffer mProgressPixels;
+    private int mRevealPercent = -1;
+
+    private static final class Stroke {
+        final float radius;
+        float[] points = new float[32];
+        int size;
+
+        Stroke(float radius) {
+            this.radius = radius;
+        }
+
+        void add(float x, float y) {
+            if (size + 2 > points.length) {
+                float[] grown = new float[points.length * 2];
+                System.arraycopy(points, 0, grown, 0, size);
+                points = grown;
+            }
+            points[size++] = x;
+            points[size++] = y;
+        }
+    }
+
+    RevealMask(int width, int height) {
+        mMask = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+        mMaskCanvas = new Canvas(mMask);
+        mProgressMask = Bitmap.createBitmap(Math.max(1, width / PROGRESS_SCALE),
+                Math.max(1, height / PROGRESS_SCALE), Bitmap.Config.ALPHA_8);
+        mProgressCanvas = new Canvas(mProgressMask);
+        mProgressCanvas.scale((float) mProgressMask.getWidth() / width, (float) mProgressMask.getHeight() / height);
+
+        mBrushPaint.setColor(Color.BLACK);
+        mBrushPaint.setStyle(Paint.Style.STROKE);
+        mBrushPaint.setStrokeCap(Paint.Cap.ROUND);
+        mBrushPaint.setStrokeJoin(Paint.Join.ROUND);
+        mDotPaint.setColor(Color.BLACK);
+    }
+
+    int getWidth() {
+        return mMask.getWidth();
+    }
+
+    int getHeight() {
+        return mMask.getHeight();
+    }
+
+    Bitmap getBitmap() {
+        return mMask;
+    }
+
+    long getByteCount() {
+        return LayerBudget.getByteCount(mMask) + LayerBudget.getByteCount(mProgressMask);
+    }
+
+    /**
+     * Starts a stroke with a dab of the brush.
+     *
+     * @param dirty Set to the part of the mask that changed
+     */
+    void startStroke(float x, float y, float radius, RectF dirty) {
+        Stroke stroke = new Stroke(radius);
+        stroke.add(x, y);
+        mStrokes.add(stroke);
+        drawDot(x, y, radius);
+        dirty.set(x - radius, y - radius, x + radius, y + radius);
+        mRevealPercent = -1;
+    }
+
+    /**
+     * Continues the current stroke to a point.
+     *
+     * @param dirty Set to the part of the mask that changed
+     */
+    void extendStroke(float x, float y, RectF dirty) {
+        Stroke stroke = mStrokes.get(mStrokes.size() - 1);
+        final float lastX = stroke.points[stroke.size - 2];
+        final float lastY = stroke.points[stroke.size - 1];
+        stroke.add(x, y);
+        drawSegment(lastX, lastY, x, y, stroke.radius);
+        dirty.set(Math.min(lastX, x) - stroke.radius, Math.min(lastY, y) - stroke.radius,
+                Math.max(lastX, x) + stroke.radius, Math.max(lastY, y) + stroke.radius);
+        mRevealPercent = -1;
+    }
+
+    boolean hasStrokes() {
+        return !mStrokes.isEmpty();
+    }
+
+    /**
+     * Removes the last stroke.
+     *
+     * @return Whether there was a stroke to remove
+     */
+    boolean undo() {
+        if (mStrokes.isEmpty()) {
+            return false;
+        }
+        mStrokes.remove(mStrokes.size() - 1);
+        clearMasks();
+        for (int i = 0; i < mStrokes.size(); i++) {
+            Stroke stroke = mStrokes.get(i);
+            drawDot(stroke.points[0], stroke.points[1], stroke.radius);
+            for (int j = 2; j < stroke.size; j += 2) {
+                drawSegment(stroke.points[j - 2], stroke.points[j - 1], stroke.points[j], stroke.points[j + 1],
+                        stroke.radius);
+            }
+        }
+        return true;
+    }
+
+    void reset() {
+        mStrokes.clear();
+        clearMasks();
+    }
+
+    /**
+     * @return How much of the mask has been revealed, between 0 and 100
+     */
+    int getRevealPercent() {
+        if (mRevealPercent >= 0) {
+            return mRevealPercent;
+        }
+
+        final int size = mProgressMask.getRowBytes() * mProgressMask.getHeight();
+        if (mProgressPixels == null) {
+            mProgressPixels = ByteBuffer.allocate(size);
+        }
+        mProgressPixels.rewind();
+        mProgressMask.copyPixelsToBuffer(mProgressPixels);
+
+        final int width = mProgressMask.getWidth();
+        final int height = mProgressMask.getHeight();
+        final int rowBytes = mProgressMask.getRowBytes();
+        final byte[] pixels = mProgressPixels.array();
+        int revealed = 0;
+        for (int y = 0; y < height; y++) {
+            final int row = y * rowBytes;
+            for (int x = 0; x < width; x++) {
+                if ((pixels[row + x] & 0xFF) >= REVEALED_ALPHA) {
+                    revealed++;
+                }
+            }
+        }
+        mRevealPercent = Math.round(100f * revealed / (width * height));
+        return mRevealPercent;
+    }
+
+    private void drawDot(float x, float y, float radius) {
+        mMaskCanvas.drawCircle(x, y, radius, mDotPaint);
+        mProgressCanvas.drawCircle(x, y, radius, mDotPaint);
+    }
+
+    private void drawSegment(float fromX, float fromY, float toX, float toY, float radius) {
+        mBrushPaint.setStrokeWidth(2 * radius);
+        mMaskCanvas.drawLine(fromX, fromY, toX, toY, mBrushPaint);
+        mProgressCanvas.drawLine(fromX, fromY, toX, toY, mBrushPaint);
+    }
+
+    private void clearMasks() {
+        mMask.eraseColor(Color.TRANSPARENT);
+        mProgressMask.eraseColor(Color.TRANSPARENT);
+        mRevealPercent = -1;
+    }
+}
@@ -0,0 +1,52 @@
+package com.alihafizji.splitimageview;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+
+/**
+ * A BitmapDrawable for a bitmap that was decoded at a fraction of its source size. It reports
+ * the intrinsic size of the full image, so swapping it for the full image, or the full image for
+ * it, does not change the geometry of a {@link SplitImageView}.
+ */
+class SampledBitmapDrawable extends BitmapDrawable {
+
+    private final int mSourceWidth;
+    private final int mSourceHeight;
+
+    /**
+     * @param sourceWidth The width of the full image in pixels
+     * @param sourceHeight The height of the full image in pixels
+     */
+    SampledBitmapDrawable(Resources res, Bitmap bitmap, int sourceWidth, int sourceHeight) {
+        super(res, bitmap);
+        mSourceWidth = sourceWidth;
+        mSourceHeight = sourceHeight;
+    }
+
+    int getSourceWidth() {
+        return mSourceWidth;
+    }
+
+    int getSourceHeight() {
+        return mSourceHeight;
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        Bitmap bitmap = getBitmap();
+        if (bitmap == null || bitmap.getWidth() == 0) {
+            return super.getIntrinsicWidth();
+        }
+        return Math.round(super.getIntrinsicWidth() * (float) mSourceWidth / bitmap.getWidth());
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        Bitmap bitmap = getBitmap();
+        if (bitmap == null || bitmap.getHeight() == 0) {
+            return super.getIntrinsicHeight();
+        }
+        return Math.round(super.getIntrinsicHeight() * (float) mSourceHeight / bitmap.getHeight());
+    }
+}
@@ -0,0 +1,116 @@
+package com.alihafizji.splitimageview;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * One background decode of a Uri at one size, shared by every {@link LayerLoadTask} that asks
+ * for the same Uri and size while it is in flight, e.g. when a grid of comparisons that all
+ * show the same "before" image is bound at once. The decode is only abandoned once every task
+ * waiting for it has been cancelled.
+ *
+ * Everything but {@link #run()} happens on the main thread.
+ */
+final class SharedDecode implements Runnable {
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+    private static final HashMap<String, SharedDecode> sInFlight = new HashMap<String, SharedDecode>();
+
+    private final String mKey;
+    private final Context mContext;
+    private final Uri mUri;
+    private final int mReqWidth;
+    private final int mReqHeight;
+    private final List<LayerLoadTask> mWaiters = new ArrayList<LayerLoadTask>(2);
+    private DecodeScheduler.Task mTask;
+    private volatile boolean mCancelled;
+
+    private SharedDecode(String key, Context context, Uri uri, int reqWidth, int reqHeight) {
+        mKey = key;
+        mContext = context;
+        mUri = uri;
+        mReqWidth = reqWidth;
+        mReqHeight = reqHeight;
+    }
+
+    /**
+     * Adds a task to the decode in flight for the Uri and size, starting one if there is none.
+     */
+    static SharedDecode join(Context context, Uri uri, int reqWidth, int reqHeight, LayerLoadTask task) {
+        String key = uri + "|" + reqWidth + "x" + reqHeight;
+        SharedDecode decode = sInFlight.get(key);
+        if (decode == null) {
+            decode = new SharedDecode(key, context, uri, reqWidth, reqHeight);
+            sInFlight.put(key, decode);
+            decode.mWaiters.add(task);
+            decode.mTask = DecodeScheduler.schedule(decode, task.getPriority());
+        } else {
+            decode.mWaiters.add(task);
+            decode.onPriorityChanged();
+        }
+        return decode;
+    }
+
+    /**
+     * Runs the decode at the most urgent priority of the tasks waiting for it.
+     */
+    void onPriorityChanged() {
+        int priority = DecodeScheduler.PRIORITY_PREFETCH;
+        for (int i = 0; i < mWaiters.size(); i++) {
+            priority = Math.min(priority, mWaiters.get(i).getPriority());
+        }
+        DecodeScheduler.reprioritize(mTask, priority);
+    }
+
+    /**
+     * Removes a task, cancelling the decode if it was the last one waiting for it.
+     */
+    void leave(LayerLoadTask task) {
+        if (!mWaiters.remove(task)) {
+            return;
+        }
+        if (mWaiters.isEmpty()) {
+            mCancelled = true;
+            DecodeScheduler.cancel(mTask);
+            if (sInFlight.get(mKey) == this) {
+                sInFlight.remove(mKey);
+            }
+        } else {
+            onPriorityChanged();
+        }
+    }
+
+    @Override
+    public void run() {
+        if (mCancelled) {
+            return;
+        }
+
+        final Drawable drawable = LayerDecoder.decodeUri(mContext, mUri, mReqWidth, mReqHeight);
+        sMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (sInFlight.get(mKey) == SharedDecode.this) {
+                    sInFlight.remove(mKey);
+                }
+                if (mCancelled) {
+                    return;
+                }
+
+                List<LayerLoadTask> waiters = new ArrayList<LayerLoadTask>(mWaiters);
+                mWaiters.clear();
+                for (int i = 0; i < waiters.size(); i++) {
+                    // Every view gets its own drawable for the shared bitmap
+                    waiters.get(i).onDecoded(i == 0 ? drawable : LayerDecoder.copyLayer(drawable));
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,263 @@
+package com.alihafizji.splitimageview;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.ExifInterface;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Renders many split composites in the background, e.g. feed thumbnails at several split
+ * positions.
+ *
+ * Jobs are decoded with the library's subsampling decoder and drawn with a
+ * {@link SplitRenderer} on a fixed pool of worker threads. Uris are shown in their EXIF or
+ * MediaStore orientation, like {@link SplitImageView} shows them. Jobs that share both sources and the
+ * output size are decoded once and rendered at each of their split percents. The decoded
+ * bitmaps of all jobs in flight are kept under the memory budget given at construction; the
+ * rendered results belong to the caller and are not counted.
+ */
+public class SplitBatchRenderer {
+
+    /**
+     * One composite to render.
+     */
+    public static class Job {
+        public final ImageSource foreground;
+        public final ImageSource background;
+        public final int width;
+        public final int height;
+        public final int splitPercent;
+
+        /**
+         * @param foreground The source of the foreground image, or null
+         * @param background The source of the background image, or null
+         * @param width The width of the composite in pixels
+         * @param height The height of the composite in pixels
+         * @param splitPercent The split percent, between 0 and 100
+         */
+        public Job(ImageSource foreground, ImageSource background, int width, int height, int splitPercent) {
+            if (width <= 0 || height <= 0) {
+                throw new IllegalArgumentException("Job size should be positive and not:" + width + "x" + height);
+            }
+            if (splitPercent < 0 || splitPercent > 100) {
+                throw new IllegalArgumentException("Split percent should be between 0 and 100 and not:" + splitPercent);
+            }
+            this.foreground = foreground;
+            this.background = background;
+            this.width = width;
+            this.height = height;
+            this.splitPercent = splitPercent;
+        }
+    }
+
+    /**
+     * Groups jobs that can share one decode, by the equality of their sources rather than their
+     * descriptions, which for buffers and file descriptors are not unique.
+     */
+    private static final class DecodeKey {
+        private final ImageSource mForeground;
+        private final ImageSource mBackground;
+        private final int mWidth;
+        private final int mHeight;
+
+        DecodeKey(Job job) {
+            mForeground = job.foreground;
+            mBackground = job.background;
+            mWidth = job.width;
+            mHeight = job.height;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof DecodeKey)) {
+                return false;
+            }
+            DecodeKey other = (DecodeKey) o;
+            return mWidth == other.mWidth && mHeight == other.mHeight
+                    && ImageSource.equals(mForeground, other.mForeground)
+                    && ImageSource.equals(mBackground, other.mBackground);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = mForeground == null ? 0 : mForeground.hashCode();
+            result = 31 * result + (mBackground == null ? 0 : mBackground.hashCode());
+            result = 31 * result + mWidth;
+            return 31 * result + mHeight;
+        }
+    }
+
+    /**
+     * Receives the results of a batch. Methods are called on the worker threads, once per job,
+     * as soon as that job completes.
+     */
+    public interface Callback {
+        void onJobRendered(Job job, Bitmap composite);
+
+        void onJobFailed(Job job, Exception e);
+    }
+
+    private final Context mContext;
+    private final SplitRenderer mRenderer;
+    private final MemoryBudget mBudget;
+    private final ExecutorService mExecutor;
+
+    /**
+     * @param context Used to resolve sources, only its application context is kept
+     * @param scaleType The scale type both images are placed with
+     * @param threadCount The number of worker threads
+     * @param memoryBudget The maximum number of bytes of decoded images held at once
+     */
+    public SplitBatchRenderer(Context context, SplitImageView.ScaleType scaleType, int threadCount,
+                              long memoryBudget) {
+        if (threadCount <= 0) {
+            throw new IllegalArgumentException("Thread count should be positive and not:" + threadCount);
+        }
+        Context applicationContext = context.getApplicationContext();
+        mContext = applicationContext != null ? applicationContext : context;
+        mRenderer = new SplitRenderer(scaleType);
+        mBudget = new MemoryBudget(memoryBudget);
+        mExecutor = Executors.newFixedThreadPool(threadCount, new BackgroundThreadFactory("SplitBatchRenderer"));
+    }
+
+    /**
+     * Queues the jobs and returns immediately. Results are delivered to the callback as they
+     * complete, in no particular order.
+     */
+    public void render(List<Job> jobs, Callback callback) {
+        Map<DecodeKey, List<Job>> groups = new LinkedHashMap<DecodeKey, List<Job>>();
+        for (Job job : jobs) {
+            DecodeKey key = new DecodeKey(job);
+            List<Job> group = groups.get(key);
+            if (group == null) {
+                group = new ArrayList<Job>();
+                groups.put(key, group);
+            }
+            group.add(job);
+        }
+
+        for (List<Job> group : groups.values()) {
+            mExecutor.execute(new GroupTask(group, callback));
+        }
+    }
+
+    /**
+     * Stops accepting jobs. Jobs already queued are still rendered.
+     */
+    public void shutdown() {
+        mExecutor.shutdown();
+    }
+
+    private class GroupTask implements Runnable {
+        private final List<Job> mJobs;
+        private final Callback mCallback;
+
+        GroupTask(List<Job> jobs, Callback callback) {
+            mJobs = jobs;
+            mCallback = callback;
+        }
+
+        @Override
+        public void run() {
+            final Job first = mJobs.get(0);
+            BitmapFactory.Options foregroundOptions = null;
+            BitmapFactory.Options backgroundOptions = null;
+            Bitmap foreground = null;
+            Bitmap background = null;
+            int foregroundOrientation = ExifInterface.ORIENTATION_NORMAL;
+            int backgroundOrientation = ExifInterface.ORIENTATION_NORMAL;
+            long reserved = 0;
+            int delivered = 0;
+
+            try {
+                long cost = 0;
+                if (first.foreground != null) {
+                    foregroundOrientation = readOrientation(first.foreground);
+                    foregroundOptions = measure(first.foreground, foregroundOrientation, first.width, first.height);
+                    cost += estimateBytes(foregroundOptions);
+                }
+                if (first.background != null) {
+                    backgroundOrientation = readOrientation(first.background);
+                    backgroundOptions = measure(first.background, backgroundOrientation, first.width, first.height);
+                    cost += estimateBytes(backgroundOptions);
+                }
+
+                reserved = mBudget.acquire(cost);
+
+                if (foregroundOptions != null) {
+                    foreground = LayerDecoder.decodeSource(mContext, first.foreground, foregroundOptions);
+                    if (foreground == null) {
+                        throw new IllegalStateException("Unable to decode " + first.foreground);
+                    }
+                }
+                if (backgroundOptions != null) {
+                    background = LayerDecoder.decodeSource(mContext, first.background, backgroundOptions);
+                    if (background == null) {
+                        throw new IllegalStateException("Unable to decode " + first.background);
+                    }
+                }
+
+                for (Job job : mJobs) {
+                    Bitmap composite = mRenderer.render(job.width, job.height, foreground, foregroundOrientation,
+                            background, backgroundOrientation, job.splitPercent);
+                    delivered++;
+                    mCallback.onJobRendered(job, composite);
+                }
+            } catch (Exception e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                for (int i = delivered; i < mJobs.size(); i++) {
+                    mCallback.onJobFailed(mJobs.get(i), e);
+                }
+            } finally {
+                if (foreground != null) {
+                    foreground.recycle();
+                }
+                if (background != null) {
+                    background.recycle();
+                }
+                if (reserved > 0) {
+                    mBudget.release(reserved);
+                }
+            }
+        }
+
+        private int readOrientation(ImageSource source) {
+            return source.type == ImageSource.TYPE_URI ? LayerDecoder.readOrientation(mContext, source.uri)
+                    : ExifInterface.ORIENTATION_NORMAL;
+        }
+
+        private BitmapFactory.Options measure(ImageSource source, int orientation, int width, int height)
+                throws Exception {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            LayerDecoder.decodeSource(mContext, source, options);
+            if (options.outWidth <= 0 || options.outHeight <= 0) {
+                throw new IllegalStateException("Unable to decode " + source);
+            }
+            options.inJustDecodeBounds = false;
+            // The bitmap is decoded unrotated, a quarter turn swaps the size it is shown at
+            final boolean swapsDimensions = OrientedDrawable.swapsDimensions(orientation);
+            options.inSampleSize = LayerDecoder.calculateInSampleSize(options.outWidth, options.outHeight,
+                    swapsDimensions ? height : width, swapsDimensions ? width : height);
+            return options;
+        }
+
+        private long estimateBytes(BitmapFactory.Options options) {
+            long width = (options.outWidth + options.inSampleSize - 1) / options.inSampleSize;
+            long height = (options.outHeight + options.inSampleSize - 1) / options.inSampleSize;
+            return width * height * 4;
+        }
+    }
+}
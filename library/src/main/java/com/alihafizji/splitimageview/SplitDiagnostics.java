@@ -0,0 +1,106 @@
+package com.alihafizji.splitimageview;
+
+import android.util.Log;
+
+/**
+ * Opt-in runtime checks that flag expensive ways of using {@link SplitImageView}.
+ *
+ * Diagnostics are disabled by default. Once enabled every SplitImageView reports each kind of
+ * violation at most once per content change, either to the registered {@link Listener} or, when
+ * no listener is set, to the log.
+ */
+public final class SplitDiagnostics {
+
+    private static final String TAG = "SplitDiagnostics";
+    private static final float DEFAULT_OVERSIZE_FACTOR = 4.0f;
+
+    /**
+     * An image was read and decoded from a Uri, file descriptor or buffer on the main thread.
+     */
+    public static final int VIOLATION_MAIN_THREAD_DECODE = 1;
+
+    /**
+     * A layer holds many more pixels than it is displayed with.
+     *
+     * @see #setOversizeFactor(float)
+     */
+    public static final int VIOLATION_OVERSIZED_LAYER = 1 << 1;
+
+    /**
+     * A split animation kept running while the view was detached from its window.
+     */
+    public static final int VIOLATION_ANIMATION_WHILE_DETACHED = 1 << 2;
+
+    /**
+     * Receives the violations detected while diagnostics are enabled.
+     */
+    public interface Listener {
+        /**
+         * Called on the thread that detected the violation, usually the main thread.
+         *
+         * @param view The view that was misused
+         * @param violation One of the VIOLATION_ constants
+         * @param message A human readable description of the violation
+         */
+        void onViolation(SplitImageView view, int violation, String message);
+    }
+
+    private static volatile boolean sEnabled;
+    private static volatile Listener sListener;
+    private static volatile float sOversizeFactor = DEFAULT_OVERSIZE_FACTOR;
+
+    private SplitDiagnostics() {
+    }
+
+    /**
+     * Enables diagnostics and logs every violation.
+     */
+    public static void enable() {
+        enable(null);
+    }
+
+    /**
+     * Enables diagnostics and reports every violation to the given listener.
+     *
+     * @param listener The listener to report to, or null to log violations instead
+     */
+    public static void enable(Listener listener) {
+        sListener = listener;
+        sEnabled = true;
+    }
+
+    public static void disable() {
+        sEnabled = false;
+        sListener = null;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    public static float getOversizeFactor() {
+        return sOversizeFactor;
+    }
+
+    /**
+     * Sets how many times more pixels than displayed a layer may hold before it is reported as
+     * oversized. By default this is 4, i.e. twice the displayed size in each dimension.
+     *
+     * @param factor The allowed ratio between decoded and displayed pixels, at least 1
+     */
+    public static void setOversizeFactor(float factor) {
+        if (factor < 1) {
+            throw new IllegalArgumentException("Oversize factor should be at least 1 and not:" + factor);
+        }
+        sOversizeFactor = factor;
+    }
+
+    static void report(SplitImageView view, int violation, String message) {
+        Listener listener = sListener;
+        if (listener != null) {
+            listener.onViolation(view, violation, message);
+        } else {
+            Log.w(TAG, message);
+        }
+    }
+}
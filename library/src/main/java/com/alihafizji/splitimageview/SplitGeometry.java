@@ -0,0 +1,122 @@
+package com.alihafizji.splitimageview;
+
+import android.graphics.Matrix;
+import android.graphics.Path;
+import android.graphics.RectF;
+
+/**
+ * The scale type and split calculations shared by {@link SplitImageView} and
+ * {@link SplitRenderer}. Everything here only touches its arguments, so it is safe to call from
+ * any thread as long as the arguments are not shared.
+ */
+final class SplitGeometry {
+
+    private static final Matrix.ScaleToFit[] sS2FArray = {
+            Matrix.ScaleToFit.FILL,
+            Matrix.ScaleToFit.START,
+            Matrix.ScaleToFit.CENTER,
+            Matrix.ScaleToFit.END
+    };
+
+    private SplitGeometry() {
+    }
+
+    /**
+     * Whether content of the given size is stretched to the frame through its bounds instead of
+     * being positioned by a draw matrix.
+     */
+    static boolean fillsFrame(SplitImageView.ScaleType scaleType, int dwidth, int dheight) {
+        return dwidth <= 0 || dheight <= 0 || SplitImageView.ScaleType.FIT_XY == scaleType;
+    }
+
+    /**
+     * Computes the matrix that places content of dwidth x dheight in a frame of
+     * vwidth x vheight. For {@link SplitImageView.ScaleType#MATRIX} matrix is expected to
+     * already hold the image matrix, for every other scale type it is overwritten.
+     *
+     * @return matrix, or null when the content is drawn untransformed
+     */
+    static Matrix configureDrawMatrix(SplitImageView.ScaleType scaleType, int dwidth, int dheight,
+                                      int vwidth, int vheight, Matrix matrix,
+                                      RectF tempSrc, RectF tempDst) {
+        if (fillsFrame(scaleType, dwidth, dheight)) {
+            return null;
+        }
+
+        boolean fits = vwidth == dwidth && vheight == dheight;
+
+        if (SplitImageView.ScaleType.MATRIX == scaleType) {
+            return matrix.isIdentity() ? null : matrix;
+        } else if (fits) {
+            return null;
+        } else if (SplitImageView.ScaleType.CENTER == scaleType) {
+            matrix.setTranslate((int) ((vwidth - dwidth) * 0.5f + 0.5f),
+                    (int) ((vheight - dheight) * 0.5f + 0.5f));
+        } else if (SplitImageView.ScaleType.CENTER_CROP == scaleType) {
+            float scale;
+            float dx = 0, dy = 0;
+
+            if (dwidth * vheight > vwidth * dheight) {
+                scale = (float) vheight / (float) dheight;
+                dx = (vwidth - dwidth * scale) * 0.5f;
+            } else {
+                scale = (float) vwidth / (float) dwidth;
+                dy = (vheight - dheight * scale) * 0.5f;
+            }
+
+            matrix.setScale(scale, scale);
+            matrix.postTranslate((int) (dx + 0.5f), (int) (dy + 0.5f));
+        } else if (SplitImageView.ScaleType.CENTER_INSIDE == scaleType) {
+            float scale;
+            float dx;
+            float dy;
+
+            if (dwidth <= vwidth && dheight <= vheight) {
+                scale = 1.0f;
+            } else {
+                scale = Math.min((float) vwidth / (float) dwidth,
+                        (float) vheight / (float) dheight);
+            }
+
+            dx = (int) ((vwidth - dwidth * scale) * 0.5f + 0.5f);
+            dy = (int) ((vheight - dheight * scale) * 0.5f + 0.5f);
+
+            matrix.setScale(scale, scale);
+            matrix.postTranslate(dx, dy);
+        } else {
+            tempSrc.set(0, 0, dwidth, dheight);
+            tempDst.set(0, 0, vwidth, vheight);
+
+            matrix.setRectToRect(tempSrc, tempDst, scaleTypeToScaleToFit(scaleType));
+        }
+        return matrix;
+    }
+
+    /**
+     * Builds the triangle the foreground is clipped to, (0, height), (0, top) and (right, height)
+     * in content coordinates.
+     *
+     * @param corners If not null receives top and right
+     */
+    static void buildSplitPath(Path path, int width, int height, int splitPercent, float[] corners) {
+        float aspectRatio = width/(height * 1.0f);
+        int max = Math.max(width, height);
+        float offset = -max + (max * 2) * (splitPercent/100.0f);
+
+        path.reset();
+        path.moveTo(0, height);
+        path.lineTo(0, -offset);
+        path.lineTo(width + offset * aspectRatio, height);
+        path.close();
+
+        if (corners != null) {
+            corners[0] = -offset;
+            corners[1] = width + offset * aspectRatio;
+        }
+    }
+
+    private static Matrix.ScaleToFit scaleTypeToScaleToFit(SplitImageView.ScaleType st)  {
+        // ScaleToFit enum to their corresponding Matrix.ScaleToFit values
+        return sS2FArray[st.nativeInt - 1];
+    }
+}
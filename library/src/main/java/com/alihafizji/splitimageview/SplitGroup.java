@@ -0,0 +1,131 @@
+package com.alihafizji.splitimageview;
+
+import android.animation.ValueAnimator;
+import android.os.Build;
+import android.util.Log;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Links several {@link SplitImageView}s so that they always show the same split, e.g. in a grid
+ * of comparisons.
+ *
+ * The group owns the split percent. Dragging or snapping the split of any member changes the
+ * group's value, and the group applies the latest value to all of its members once per frame,
+ * however many times it changed in between. Groups are meant to be used on the main thread only.
+ *
+ * Members are held weakly, views that are thrown away without being removed, e.g. rows of a
+ * list, leave the group once they are garbage collected.
+ */
+public class SplitGroup {
+
+    private static final String TAG = "SplitGroup";
+
+    private final List<WeakReference<SplitImageView>> mViews = new ArrayList<WeakReference<SplitImageView>>();
+    private int mSplitPercent;
+    private boolean mApplyScheduled;
+
+    private final Runnable mApplyRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mApplyScheduled = false;
+            applySplitPercent();
+        }
+    };
+
+    /**
+     * @param splitPercent The initial split percent of the group, between 0 and 100
+     */
+    public SplitGroup(int splitPercent) {
+        if (splitPercent < 0 || splitPercent > 100) {
+            throw new IllegalArgumentException("Split percent should be between 0 and 100 and not:" + splitPercent);
+        }
+        mSplitPercent = splitPercent;
+    }
+
+    /**
+     * Adds a view to the group, moving it out of any other group. The view takes the split of
+     * the group right away.
+     */
+    public void addView(SplitImageView view) {
+        if (view.getSplitGroup() == this) {
+            return;
+        }
+        SplitGroup previous = view.getSplitGroup();
+        if (previous != null) {
+            previous.removeView(view);
+        }
+        mViews.add(new WeakReference<SplitImageView>(view));
+        view.setSplitGroup(this);
+        view.applyGroupSplitPercent(mSplitPercent);
+    }
+
+    public void removeView(SplitImageView view) {
+        for (int i = mViews.size() - 1; i >= 0; i--) {
+            SplitImageView member = mViews.get(i).get();
+            if (member == null || member == view) {
+                mViews.remove(i);
+            }
+        }
+        if (view.getSplitGroup() == this) {
+            view.setSplitGroup(null);
+        }
+    }
+
+    public int getSplitPercent() {
+        return mSplitPercent;
+    }
+
+    /**
+     * Sets the split percent of every view in the group. The views are updated on the next
+     * frame.
+     *
+     * @param percent
+     */
+    public void setSplitPercent(int percent) {
+        if (percent < 0 || percent > 100) {
+            Log.e(TAG, "Split percentage should be between 0 and 100.");
+            return;
+        }
+        if (mSplitPercent != percent) {
+            mSplitPercent = percent;
+            scheduleApply();
+        }
+    }
+
+    private void scheduleApply() {
+        if (mApplyScheduled) {
+            return;
+        }
+
+        // Frame callbacks are delivered through any attached view
+        for (int i = 0; i < mViews.size(); i++) {
+            SplitImageView view = mViews.get(i).get();
+            if (view != null && view.getWindowToken() != null) {
+                mApplyScheduled = true;
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                    view.postOnAnimation(mApplyRunnable);
+                } else {
+                    view.postDelayed(mApplyRunnable, ValueAnimator.getFrameDelay());
+                }
+                return;
+            }
+        }
+
+        // Nothing is on screen, there is no frame to wait for
+        applySplitPercent();
+    }
+
+    private void applySplitPercent() {
+        for (int i = mViews.size() - 1; i >= 0; i--) {
+            SplitImageView view = mViews.get(i).get();
+            if (view != null) {
+                view.applyGroupSplitPercent(mSplitPercent);
+            } else {
+                mViews.remove(i);
+            }
+        }
+    }
+}
@@ -3,9 +3,11 @@ package com.alihafizji.splitimageview;
 import android.animation.Animator;
 import android.animation.AnimatorSet;
 import android.animation.ValueAnimator;
+import android.app.Activity;
+import android.content.ComponentCallbacks2;
 import android.content.ContentResolver;
 import android.content.Context;
-import android.content.pm.PackageManager;
+import android.content.ContextWrapper;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
 import android.graphics.Bitmap;
@@ -16,26 +18,34 @@ import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Path;
 import android.graphics.PorterDuff;
+import android.graphics.PixelFormat;
 import android.graphics.PorterDuffColorFilter;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.GestureDetector;
+import android.view.Gravity;
 import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.view.accessibility.AccessibilityEvent;
 import android.view.accessibility.AccessibilityNodeInfo;
 
-import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.io.InputStream;
-import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by kauserali on 17/07/14.
@@ -46,16 +56,34 @@ public class SplitImageView extends View {
     private static final int DEFAULT_SPLIT_PERCENT = 50;
     private static final int SNAP_MARGIN_PERCENTAGE = 15;
     private static final int DEFAULT_AUTOMATIC_ANIMATION_DURATION = 600;
+    private static final int PREVIEW_SIZE_DIVISOR = 8;
+    private static final int DEFAULT_PREVIEW_SIZE = 64;
+    private static final int DEFAULT_HEATMAP_THRESHOLD = 16;
+    private static final float DEFAULT_MAX_ZOOM = 4f;
+    private static final int NO_POSTED_SPLIT_PERCENT = -1;
+    private static final float DEFAULT_REVEAL_BRUSH_RADIUS_DP = 24;
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
 
     // settable by the client
-    private Uri mBackgroundUri, mForegroundUri;
-    private int mBackgroundResId = 0, mForegroundResId = 0;
+    private ImageSource mBackgroundSource, mForegroundSource;
     private Matrix mMatrix;
     private ScaleType mScaleType;
 
 
     // these are applied to the drawable
     private ColorFilter mColorFilter;
+    private ColorFilter mForegroundColorFilter, mBackgroundColorFilter;
+    private boolean mBakeColorFilters;
+    private boolean mRasterizeLayers;
+    private final RasterizedLayer mForegroundRaster = new RasterizedLayer();
+    private final RasterizedLayer mBackgroundRaster = new RasterizedLayer();
+    private final Paint mRasterPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private Bitmap mForegroundBakedBitmap, mBackgroundBakedBitmap;
+    // Baking ran out of memory, the filter is applied when drawing until the layer changes
+    private boolean mForegroundBakeFailed, mBackgroundBakeFailed;
+    private final Paint mBakePaint = new Paint();
+    private final Paint mLayerPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
     private int mAlpha = 255;
     private int mViewAlphaScale = 256;
     private boolean mColorMod = false;
@@ -69,20 +97,163 @@ public class SplitImageView extends View {
     // Avoid allocations...
     private RectF mTempSrc = new RectF();
     private RectF mTempDst = new RectF();
+    private final RectF mTempDirty = new RectF();
+    private final Rect mTempInvalidate = new Rect();
+    private final Matrix mIdentityMatrix = new Matrix();
 
     private boolean mCropToPadding, mHaveFrame, mUnveilOnTouch, mSnapToBounds;
+    private boolean mLazyDecode;
+    private boolean mProgressiveLoading;
+    private LayerLoadTask mForegroundLoad, mBackgroundLoad;
+    // A full layer that finished loading while the other layer is still loading, both are
+    // swapped in together so the split never compares a full image with a preview
+    private Drawable mPendingForegroundLayer, mPendingBackgroundLayer;
+    // Loads cancelled when the view was detached, restarted when it is attached again. Pending
+    // layers are kept until then.
+    private boolean mForegroundLoadInterrupted, mBackgroundLoadInterrupted, mImageLoadsInterrupted;
+    // Registered while loads are running, scrolling moves the view on or off screen without
+    // any visibility change
+    private boolean mScrollListenerRegistered;
+    private final ViewTreeObserver.OnScrollChangedListener mScrollChangedListener =
+            new ViewTreeObserver.OnScrollChangedListener() {
+        @Override
+        public void onScrollChanged() {
+            updateLayerLoadPriority();
+        }
+    };
+    private ImageLoader mImageLoader;
+    private LoadRequest mForegroundImageLoad, mBackgroundImageLoad;
+    private static ImageLoader sDefaultImageLoader;
+
+    private boolean mShowDifferenceHeatmap;
+    private int mDifferenceHeatmapThreshold = DEFAULT_HEATMAP_THRESHOLD;
+    private Bitmap mDifferenceHeatmap;
+    private final Matrix mDifferenceHeatmapMatrix = new Matrix();
+    private int mDifferenceHeatmapGeneration;
+    private boolean mDifferenceHeatmapPending;
+    // Computing the heatmap failed for the current layers, it is not tried again until they change
+    private boolean mDifferenceHeatmapFailed;
+    private boolean mDifferenceHeatmapRequestQueued;
+    private final Runnable mRequestDifferenceHeatmap = new Runnable() {
+        @Override
+        public void run() {
+            mDifferenceHeatmapRequestQueued = false;
+            if (mShowDifferenceHeatmap && mDifferenceHeatmap == null && !mDifferenceHeatmapFailed) {
+                requestDifferenceHeatmap();
+            }
+        }
+    };
 
     private int mSplitPercent;
+    private SplitGroup mSplitGroup;
+    // The latest split percent posted from any thread and not applied yet
+    private final AtomicInteger mPostedSplitPercent = new AtomicInteger(NO_POSTED_SPLIT_PERCENT);
+    private final Runnable mSchedulePostedSplitPercent = new Runnable() {
+        @Override
+        public void run() {
+            if (mAttachedToWindow && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                postOnAnimation(mApplyPostedSplitPercent);
+            } else {
+                mApplyPostedSplitPercent.run();
+            }
+        }
+    };
+    private final Runnable mApplyPostedSplitPercent = new Runnable() {
+        @Override
+        public void run() {
+            int percent = mPostedSplitPercent.getAndSet(NO_POSTED_SPLIT_PERCENT);
+            if (percent != NO_POSTED_SPLIT_PERCENT) {
+                setSplitPercent(percent);
+            }
+        }
+    };
     private Path mSplitDrawPath;
+    // The split path is the triangle (0, height), (0, top), (right, height)
+    private final RectF mSplitPathBounds = new RectF();
+    private float mSplitPathTop, mSplitPathRight, mSplitPathHeight;
+    private final float[] mSplitPathCorners = new float[2];
     private Paint mDebugDrawPaint;
     private boolean mEnableDebugDraw;
+    private DebugHud mDebugHud;
     private boolean mIsAnimating;
+    private ValueAnimator mSnapAnimator;
+    private boolean mAttachedToWindow;
+    // Layers were released to save memory, Uri layers are decoded again in the background
+    private boolean mLayersReleased;
+    // Layers replaced by smaller copies to stay within the LayerBudget
+    private boolean mForegroundDowngraded, mBackgroundDowngraded;
+    private long mLastDrawnTime;
+    private int mReportedViolations;
 
     private boolean mEnableAutomaticAnimation;
     private AnimatorSet mAutomaticAnimationAnimatorSet;
+    private ValueAnimator mAutomaticAnimationLeadIn;
+    private boolean mAutomaticAnimationTowardsMax = true;
     private int mAutomaticAnimationDuration;
     private GestureDetector mGestureDetector;
 
+    private boolean mZoomEnabled;
+    private float mMaxZoom = DEFAULT_MAX_ZOOM;
+    private float mZoom = 1f;
+    private float mZoomTranslateX, mZoomTranslateY;
+    // The zoom in view content coordinates, and the same zoom applied on top of the draw matrix
+    private final Matrix mZoomMatrix = new Matrix();
+    private final Matrix mZoomDrawMatrix = new Matrix();
+    private final Matrix mTempMatrix = new Matrix();
+    private ScaleGestureDetector mScaleGestureDetector;
+    // Whether the current gesture has had more than one pointer, it then zooms instead of unveiling
+    private boolean mMultiTouchGesture;
+    private float mLastFocusX, mLastFocusY;
+    private LayerMipmap mForegroundMipmap, mBackgroundMipmap;
+
+    private boolean mBrushRevealEnabled;
+    private float mRevealBrushRadius;
+    private RevealMask mRevealMask;
+    private boolean mRevealStrokeActive;
+    private final Paint mRevealMaskPaint = new Paint();
+    private final RectF mTempReveal = new RectF();
+    // The foreground with the revealed parts cut out, in view content coordinates. Only the
+    // dirty part is composited again before it is drawn, all of it after a full invalidate.
+    private Bitmap mRevealComposite;
+    private Canvas mRevealCompositeCanvas;
+    private final Rect mRevealCompositeDirty = new Rect();
+    private boolean mRevealCompositeInvalid;
+    private boolean mUnveilGestureEnabled;
+    private final FrameRateLimiter mFrameRateLimiter = new FrameRateLimiter();
+
+    /**
+     * Shared by the snap animation and the lead in of the automatic animation so that neither
+     * starting an animation nor running a frame allocates a listener. ValueAnimator.ofInt hands
+     * back cached Integers for 0 - 100.
+     */
+    final ValueAnimator.AnimatorUpdateListener mSplitPercentUpdateListener =
+            new ValueAnimator.AnimatorUpdateListener() {
+                @Override
+                public void onAnimationUpdate(ValueAnimator animation) {
+                    checkAnimationAttached();
+                    if (mFrameRateLimiter.shouldUpdate(animation)) {
+                        setSplitPercent((Integer) animation.getAnimatedValue());
+                    }
+                }
+            };
+
+    /**
+     * Shared by the two legs of the automatic animation, which keep repeating, and ignores frames
+     * once the automatic animation is disabled.
+     */
+    final ValueAnimator.AnimatorUpdateListener mAutomaticSplitPercentUpdateListener =
+            new ValueAnimator.AnimatorUpdateListener() {
+                @Override
+                public void onAnimationUpdate(ValueAnimator animation) {
+                    if (mEnableAutomaticAnimation) {
+                        checkAnimationAttached();
+                        if (mFrameRateLimiter.shouldUpdate(animation)) {
+                            setSplitPercent((Integer) animation.getAnimatedValue());
+                        }
+                    }
+                }
+            };
+
     private static final ScaleType[] sScaleTypeArray = {
             ScaleType.MATRIX,
             ScaleType.FIT_XY,
@@ -117,15 +288,28 @@ public class SplitImageView extends View {
 
         mUnveilOnTouch = a.getBoolean(R.styleable.SplitImageView_unveilOnTouch, true);
         mSnapToBounds = a.getBoolean(R.styleable.SplitImageView_snapToBounds, true);
+        mLazyDecode = a.getBoolean(R.styleable.SplitImageView_lazyDecode, false);
+        setZoomEnabled(a.getBoolean(R.styleable.SplitImageView_zoomEnabled, false));
 
-        Drawable backgroundDrawable = a.getDrawable(R.styleable.SplitImageView_backgroundSrc);
-        if (backgroundDrawable != null) {
-            setBackgroundImageDrawable(backgroundDrawable);
+        // In lazy mode drawable references are only recorded, colors are cheap enough to create
+        int backgroundResId = mLazyDecode ? a.getResourceId(R.styleable.SplitImageView_backgroundSrc, 0) : 0;
+        if (backgroundResId != 0) {
+            setBackgroundImageSource(ImageSource.fromResource(backgroundResId));
+        } else {
+            Drawable backgroundDrawable = a.getDrawable(R.styleable.SplitImageView_backgroundSrc);
+            if (backgroundDrawable != null) {
+                setBackgroundImageDrawable(backgroundDrawable);
+            }
         }
 
-        Drawable foregroundDrawable = a.getDrawable(R.styleable.SplitImageView_foregroundSrc);
-        if (foregroundDrawable != null) {
-            setForegroundImageDrawable(foregroundDrawable);
+        int foregroundResId = mLazyDecode ? a.getResourceId(R.styleable.SplitImageView_foregroundSrc, 0) : 0;
+        if (foregroundResId != 0) {
+            setForegroundImageSource(ImageSource.fromResource(foregroundResId));
+        } else {
+            Drawable foregroundDrawable = a.getDrawable(R.styleable.SplitImageView_foregroundSrc);
+            if (foregroundDrawable != null) {
+                setForegroundImageDrawable(foregroundDrawable);
+            }
         }
 
         int index = a.getInt(R.styleable.SplitImageView_scaleType, -1);
@@ -148,6 +332,154 @@ public class SplitImageView extends View {
         a.recycle();
     }
 
+    public boolean isLazyDecode() {
+        return mLazyDecode;
+    }
+
+    /**
+     * Enables or disables lazy decoding.
+     *
+     * When enabled, image sources are only recorded when they are set. They are decoded once
+     * the view is attached to a window and has been laid out, and Uris are subsampled to the
+     * size they are displayed at. Content and file Uris are decoded in the background, one
+     * decode is shared by all views showing the same Uri at the same size. Since the content
+     * size is unknown until then, the view should not be sized with wrap_content in this mode.
+     *
+     * @param lazyDecode
+     */
+    public void setLazyDecode(boolean lazyDecode) {
+        if (mLazyDecode != lazyDecode) {
+            mLazyDecode = lazyDecode;
+            if (lazyDecode) {
+                resolveDeferredLayers();
+            } else {
+                // pending sources are resolved when measuring
+                requestLayout();
+                invalidate();
+            }
+        }
+    }
+
+    /**
+     * Sets the loader every SplitImageView without a loader of its own uses for its image
+     * sources, or null to have the views decode them themselves.
+     *
+     * @param loader
+     * @see #setImageLoader(ImageLoader)
+     */
+    public static void setDefaultImageLoader(ImageLoader loader) {
+        sDefaultImageLoader = loader;
+    }
+
+    public static ImageLoader getDefaultImageLoader() {
+        return sDefaultImageLoader;
+    }
+
+    /**
+     * Sets how much memory the layer bitmaps of all SplitImageViews together may use. Once they
+     * use more, the layers of views that are not on screen are replaced by copies decoded at a
+     * fraction of their size, least recently drawn first, or released if that is not enough.
+     * Released layers are decoded again when their view is drawn. Defaults to a quarter of the
+     * maximum heap size.
+     *
+     * @param bytes The budget in bytes, 0 for no limit
+     */
+    public static void setLayerMemoryBudget(long bytes) {
+        if (bytes < 0) {
+            Log.e(TAG, "Layer memory budget should not be negative and not:" + bytes);
+            return;
+        }
+        LayerBudget.setBudget(bytes);
+    }
+
+    public static long getLayerMemoryBudget() {
+        return LayerBudget.getBudget();
+    }
+
+    public ImageLoader getImageLoader() {
+        return mImageLoader;
+    }
+
+    /**
+     * Sets the loader this view uses for its image sources, overriding the default loader. With
+     * neither the view decodes its sources itself.
+     *
+     * Layers from a loader are shown when they are delivered, so the view should not be sized
+     * with wrap_content when loaders deliver asynchronously. Progressive loading only applies
+     * to layers the view decodes itself. Layers that are already loaded are kept.
+     *
+     * @param loader The loader, or null to use the default loader
+     * @see #setDefaultImageLoader(ImageLoader)
+     */
+    public void setImageLoader(ImageLoader loader) {
+        mImageLoader = loader;
+    }
+
+    public boolean isProgressiveLoading() {
+        return mProgressiveLoading;
+    }
+
+    /**
+     * Enables or disables progressive loading of Uri sources.
+     *
+     * When enabled, a small preview of each image is shown as soon as its Uri is set, using the
+     * embedded EXIF thumbnail when there is a suitable one. The full resolution image is then
+     * decoded in the background and replaces the preview without affecting the split, the image
+     * matrix or a running animation.
+     *
+     * @param progressiveLoading
+     */
+    public void setProgressiveLoading(boolean progressiveLoading) {
+        mProgressiveLoading = progressiveLoading;
+    }
+
+    public boolean isShowDifferenceHeatmap() {
+        return mShowDifferenceHeatmap;
+    }
+
+    /**
+     * Shows a heatmap of where the foreground and background differ on top of the unveiled part
+     * of the foreground. Pixels whose channels all differ by no more than the threshold are left
+     * clear, the others are colored from yellow to red as the difference grows.
+     *
+     * The heatmap is computed at display resolution on background threads and cached until
+     * either layer, the layout or the threshold changes.
+     *
+     * @param showDifferenceHeatmap
+     * @see #setDifferenceHeatmapThreshold(int)
+     */
+    public void setShowDifferenceHeatmap(boolean showDifferenceHeatmap) {
+        if (mShowDifferenceHeatmap != showDifferenceHeatmap) {
+            mShowDifferenceHeatmap = showDifferenceHeatmap;
+            if (!showDifferenceHeatmap) {
+                invalidateDifferenceHeatmap();
+            }
+            invalidate();
+        }
+    }
+
+    public int getDifferenceHeatmapThreshold() {
+        return mDifferenceHeatmapThreshold;
+    }
+
+    /**
+     * Sets the largest per channel difference, between 0 and 255, that the difference heatmap
+     * ignores. By default this is 16.
+     *
+     * @param threshold
+     */
+    public void setDifferenceHeatmapThreshold(int threshold) {
+        if (threshold < 0 || threshold > 255) {
+            Log.e(TAG, "Difference heatmap threshold should be between 0 and 255.");
+            return;
+        }
+        if (mDifferenceHeatmapThreshold != threshold) {
+            mDifferenceHeatmapThreshold = threshold;
+            invalidateDifferenceHeatmap();
+            invalidate();
+        }
+    }
+
     public boolean isSnapToBounds() {
         return mSnapToBounds;
     }
@@ -214,8 +546,7 @@ public class SplitImageView extends View {
      */
     public void setBackgroundImageDrawable(Drawable drawable) {
         if (mBackgroundDrawable != drawable) {
-            mBackgroundResId = 0;
-            mBackgroundUri = null;
+            mBackgroundSource = null;
 
             final int oldWidth = mMaxDrawableWidth;
             final int oldHeight = mMaxDrawableHeight;
@@ -243,8 +574,7 @@ public class SplitImageView extends View {
      */
     public void setForegroundImageDrawable(Drawable drawable) {
         if (mForegroundDrawable != drawable) {
-            mForegroundResId = 0;
-            mForegroundUri = null;
+            mForegroundSource = null;
 
             final int oldWidth = mMaxDrawableWidth;
             final int oldHeight = mMaxDrawableHeight;
@@ -277,12 +607,20 @@ public class SplitImageView extends View {
      * @param uri The Uri of an image
      */
     public void setBackgroundImageURI(Uri uri) {
-        if (mBackgroundResId != 0 ||
-                (mBackgroundUri != uri &&
-                        (uri == null || mBackgroundUri == null || !uri.equals(mBackgroundUri)))) {
+        setBackgroundImageSource(uri == null ? null : ImageSource.fromUri(uri));
+    }
+
+    /**
+     * Sets the background content of this SplitImageView to the specified source.
+     *
+     * @param source The source of an image, or null to clear the background content
+     *
+     * @see #setBackgroundImageURI(android.net.Uri)
+     */
+    public void setBackgroundImageSource(ImageSource source) {
+        if (!ImageSource.equals(mBackgroundSource, source)) {
             updateDrawable(null, false);
-            mBackgroundResId = 0;
-            mBackgroundUri = uri;
+            mBackgroundSource = source;
 
             final int oldWidth = mMaxDrawableWidth;
             final int oldHeight = mMaxDrawableHeight;
@@ -315,12 +653,20 @@ public class SplitImageView extends View {
      * @param uri The Uri of an image
      */
     public void setForegroundImageURI(Uri uri) {
-        if (mForegroundResId != 0 ||
-                (mForegroundUri != uri &&
-                        (uri == null || mForegroundUri == null || !uri.equals(mForegroundUri)))) {
+        setForegroundImageSource(uri == null ? null : ImageSource.fromUri(uri));
+    }
+
+    /**
+     * Sets the foreground content of this SplitImageView to the specified source.
+     *
+     * @param source The source of an image, or null to clear the foreground content
+     *
+     * @see #setForegroundImageURI(android.net.Uri)
+     */
+    public void setForegroundImageSource(ImageSource source) {
+        if (!ImageSource.equals(mForegroundSource, source)) {
             updateDrawable(null, true);
-            mForegroundResId = 0;
-            mForegroundUri = uri;
+            mForegroundSource = source;
 
             final int oldWidth = mMaxDrawableWidth;
             final int oldHeight = mMaxDrawableHeight;
@@ -363,6 +709,80 @@ public class SplitImageView extends View {
         setForegroundImageDrawable(new BitmapDrawable(getContext().getResources(), bm));
     }
 
+    /**
+     * Rebinds this SplitImageView to new content in a single pass, e.g. when it is recycled by
+     * a ListView or RecyclerView. This is equivalent to, but cheaper than, setting both sources
+     * and the split percent separately: layers whose source did not change are kept, the view
+     * is only laid out again when the size of its content changes and a running automatic
+     * animation is not restarted.
+     *
+     * @param foreground The source of the foreground image, or null for no foreground
+     * @param background The source of the background image, or null for no background
+     * @param splitPercent The split percent, between 0 and 100
+     */
+    public void bind(ImageSource foreground, ImageSource background, int splitPercent) {
+        if (splitPercent < 0 || splitPercent > 100) {
+            Log.e(TAG, "Split percentage should be between 0 and 100.");
+            splitPercent = mSplitPercent;
+        }
+
+        if (mSnapAnimator != null) {
+            mSnapAnimator.cancel();
+        }
+
+        // Layers set as bitmaps or drawables have no source either, a null source only matches
+        // an empty layer
+        final boolean foregroundChanged = !ImageSource.equals(mForegroundSource, foreground)
+                || (foreground == null && mForegroundDrawable != null);
+        final boolean backgroundChanged = !ImageSource.equals(mBackgroundSource, background)
+                || (background == null && mBackgroundDrawable != null);
+
+        if (foregroundChanged || backgroundChanged) {
+            final int oldWidth = mMaxDrawableWidth;
+            final int oldHeight = mMaxDrawableHeight;
+
+            if (foregroundChanged) {
+                updateDrawable(null, true);
+                mForegroundSource = foreground;
+            }
+            if (backgroundChanged) {
+                updateDrawable(null, false);
+                mBackgroundSource = background;
+            }
+
+            // The layers of the previous item must not influence the size of this one
+            mMaxDrawableWidth = -1;
+            mMaxDrawableHeight = -1;
+            resolveUris();
+            updateMaxDrawableSize();
+
+            configureBounds();
+            if (mMaxDrawableWidth != oldWidth || mMaxDrawableHeight != oldHeight) {
+                requestLayout();
+            }
+            initGestureRecognizer();
+        }
+
+        if (mSplitGroup != null) {
+            // The group owns the split, the other members follow on the next frame
+            mSplitGroup.setSplitPercent(splitPercent);
+        }
+        mSplitPercent = splitPercent;
+        createPathForSplitPercent(mSplitPercent);
+
+        if (mEnableAutomaticAnimation && !isAutomaticAnimationRunning()) {
+            startAutomaticAnimation();
+        }
+    }
+
+    /**
+     * Convenience for {@link #bind(ImageSource, ImageSource, int)} with Uri sources.
+     */
+    public void bind(Uri foreground, Uri background, int splitPercent) {
+        bind(foreground == null ? null : ImageSource.fromUri(foreground),
+                background == null ? null : ImageSource.fromUri(background), splitPercent);
+    }
+
     /** Return the view's optional matrix. This is applied to the
      view's drawables when it is drawn. If there is no matrix,
      this method will return an identity matrix.
@@ -372,7 +792,8 @@ public class SplitImageView extends View {
      */
     public Matrix getImageMatrix() {
         if (mDrawMatrix == null) {
-            return new Matrix();
+            mIdentityMatrix.reset();
+            return mIdentityMatrix;
         }
         return mDrawMatrix;
     }
@@ -421,7 +842,8 @@ public class SplitImageView extends View {
     /**
      * Returns the active color filter for this SplitImageView.
      *
-     * @return the active color filter for this SplitImageView
+     * @return the active color filter for this SplitImageView, null if the foreground and the
+     * background have been given separate filters
      *
      * @see #setColorFilter(android.graphics.ColorFilter)
      */
@@ -446,8 +868,10 @@ public class SplitImageView extends View {
     }
 
     public void setColorFilter(ColorFilter cf) {
-        if (mColorFilter != cf) {
+        if (mColorFilter != cf || mForegroundColorFilter != cf || mBackgroundColorFilter != cf) {
             mColorFilter = cf;
+            mForegroundColorFilter = cf;
+            mBackgroundColorFilter = cf;
             mColorMod = true;
             applyColorMod();
             invalidate();
@@ -458,127 +882,582 @@ public class SplitImageView extends View {
         setColorFilter(null);
     }
 
-    public boolean isDebugDrawEnabled() {
-        return mEnableDebugDraw;
+    public ColorFilter getForegroundColorFilter() {
+        return mForegroundColorFilter;
     }
 
     /**
-     * This method will enable debug draw. It will draw a red border around the area that is
-     * masked/split.
+     * Sets a color filter that is only applied to the foreground image.
      *
-     * @param enableDebugDraw
+     * @param cf The color filter, or null to remove it
+     *
+     * @see #setBackgroundColorFilter(android.graphics.ColorFilter)
      */
-    public void setDebugDraw(boolean enableDebugDraw) {
-        mEnableDebugDraw = enableDebugDraw;
+    public void setForegroundColorFilter(ColorFilter cf) {
+        if (mForegroundColorFilter != cf) {
+            mForegroundColorFilter = cf;
+            mColorFilter = null;
+            mColorMod = true;
+            applyColorMod();
+            invalidate();
+        }
     }
 
-    public boolean isEnableAutomaticAnimation() {
-        return mEnableAutomaticAnimation;
+    public ColorFilter getBackgroundColorFilter() {
+        return mBackgroundColorFilter;
     }
 
     /**
-     * Will enable automatic animation. For this to work the foreground drawable & background
-     * drawable will have to be set. Also when enabled touch unveil will not work.
-     * @param enable
+     * Sets a color filter that is only applied to the background image, e.g. to tint only the
+     * "before" image.
+     *
+     * @param cf The color filter, or null to remove it
+     *
+     * @see #setForegroundColorFilter(android.graphics.ColorFilter)
      */
-    public void setEnableAutomaticAnimation(boolean enable) {
-        mEnableAutomaticAnimation = enable;
-        initGestureRecognizer();
-        if (mEnableAutomaticAnimation) {
-            startAutomaticAnimation();
-        } else {
-            stopAutomaticAnimation();
+    public void setBackgroundColorFilter(ColorFilter cf) {
+        if (mBackgroundColorFilter != cf) {
+            mBackgroundColorFilter = cf;
+            mColorFilter = null;
+            mColorMod = true;
+            applyColorMod();
+            invalidate();
         }
     }
 
+    public boolean isBakeColorFilters() {
+        return mBakeColorFilters;
+    }
+
     /**
-     * This method will set the percentage of split that is applied to the Images.
-     * Lesser the value more the amount that is reveled.
-     * By default this is 50%.
+     * Enables or disables baking of color filters.
      *
-     * @param percent
+     * When enabled, each bitmap layer with a color filter is filtered once into a cached bitmap
+     * that is drawn as is, instead of evaluating the filter on every draw. This makes drags and
+     * animations cheaper at the cost of the memory for the filtered copies. Only use it with
+     * filters that do not change, layers that are not bitmaps are still filtered when drawn.
+     *
+     * @param bakeColorFilters
      */
-    public void setSplitPercent(int percent) {
-        if (percent >= 0 && percent <= 100) {
-            mSplitPercent = percent;
-            createPathForSplitPercent(mSplitPercent);
-        } else {
-            Log.e(TAG, "Split percentage should be between 0 and 100.");
+    public void setBakeColorFilters(boolean bakeColorFilters) {
+        if (mBakeColorFilters != bakeColorFilters) {
+            mBakeColorFilters = bakeColorFilters;
+            mForegroundBakedBitmap = null;
+            mBackgroundBakedBitmap = null;
+            mForegroundBakeFailed = false;
+            mBackgroundBakeFailed = false;
+            invalidate();
         }
     }
 
+    public boolean isRasterizeLayers() {
+        return mRasterizeLayers;
+    }
+
     /**
-     * Returns the alpha that will be applied to the drawables of this SplitImageView.
+     * Enables or disables rasterizing of layers that are not bitmaps.
      *
-     * @return the alpha that will be applied to the drawable of this SplitImageView
+     * When enabled, colors, shapes, gradients, nine-patches and other drawables used as layers
+     * are rendered once into a cached bitmap of the size they are laid out at, and drawing them
+     * is a plain bitmap blit. The cache is rendered again when the bounds, state or level of the
+     * drawable change, when it invalidates itself, or when the alpha or color filter of the
+     * layer changes, so leave it off for animated drawables.
      *
-     * @see #setImageAlpha(int)
+     * @param rasterizeLayers
      */
-    public int getImageAlpha() {
-        return mAlpha;
+    public void setRasterizeLayers(boolean rasterizeLayers) {
+        if (mRasterizeLayers != rasterizeLayers) {
+            mRasterizeLayers = rasterizeLayers;
+            mForegroundRaster.invalidate();
+            mBackgroundRaster.invalidate();
+            invalidate();
+        }
+    }
+
+    public boolean isZoomEnabled() {
+        return mZoomEnabled;
     }
 
     /**
-     * Sets the alpha value that should be applied to the image.
+     * Enables or disables pinch zooming.
      *
-     * @param alpha the alpha value that should be applied to the image
+     * When enabled, pinching zooms both layers together and moving two fingers pans them, while
+     * dragging one finger still unveils the background. The split stays where it is on screen.
+     * Layers that are bitmaps are drawn from halved copies built in the background whenever they
+     * are displayed at half their size or less, which keeps zooming out smooth and free of
+     * aliasing. Zooming in never goes beyond the resolution the layers were decoded at, so use
+     * it without lazy decoding for full detail.
      *
-     * @see #getImageAlpha()
+     * @param zoomEnabled
      */
-    public void setImageAlpha(int alpha) {
-        setAlpha(alpha);
+    public void setZoomEnabled(boolean zoomEnabled) {
+        if (mZoomEnabled != zoomEnabled) {
+            mZoomEnabled = zoomEnabled;
+            if (zoomEnabled) {
+                if (mScaleGestureDetector == null) {
+                    mScaleGestureDetector = new ScaleGestureDetector(getContext(), new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+                        @Override
+                        public boolean onScaleBegin(ScaleGestureDetector detector) {
+                            mLastFocusX = detector.getFocusX();
+                            mLastFocusY = detector.getFocusY();
+                            if (getParent() != null) {
+                                getParent().requestDisallowInterceptTouchEvent(true);
+                            }
+                            return true;
+                        }
+
+                        @Override
+                        public boolean onScale(ScaleGestureDetector detector) {
+                            final float focusX = detector.getFocusX();
+                            final float focusY = detector.getFocusY();
+                            zoomBy(detector.getScaleFactor(), focusX - getPaddingLeft(), focusY - getPaddingTop(),
+                                    focusX - mLastFocusX, focusY - mLastFocusY);
+                            mLastFocusX = focusX;
+                            mLastFocusY = focusY;
+                            return true;
+                        }
+                    });
+                }
+            } else {
+                releaseMipmap(true);
+                releaseMipmap(false);
+                resetZoom();
+            }
+        }
     }
 
-    public boolean unveilOnTouch() {
-        return mUnveilOnTouch;
+    public float getMaxZoom() {
+        return mMaxZoom;
     }
 
     /**
-     * Enables the touch to unveil feature
-     * @param unveilOnTouch
+     * @param maxZoom The largest zoom factor pinching can reach, at least 1
      */
-    public void setUnveilOnTouch(boolean unveilOnTouch) {
-        mUnveilOnTouch = unveilOnTouch;
-        initGestureRecognizer();
+    public void setMaxZoom(float maxZoom) {
+        if (maxZoom < 1f) {
+            Log.e(TAG, "Max zoom should be at least 1 and not:" + maxZoom);
+            return;
+        }
+        mMaxZoom = maxZoom;
+        if (mZoom > maxZoom) {
+            zoomBy(maxZoom / mZoom, 0, 0, 0, 0);
+        }
     }
 
-    public int getAutomaticAnimationDuration() {
-        return mAutomaticAnimationDuration;
+    /**
+     * @return The current zoom factor, 1 when not zoomed
+     */
+    public float getZoom() {
+        return mZoom;
+    }
+
+    public void resetZoom() {
+        if (mZoom != 1f || mZoomTranslateX != 0 || mZoomTranslateY != 0) {
+            mZoom = 1f;
+            mZoomTranslateX = 0;
+            mZoomTranslateY = 0;
+            updateZoomMatrix();
+            invalidate();
+        }
     }
 
     /**
-     * Set the duration of the automatic animation.
-     * If the automatic animation has already started this won't take effect.
-     * Call this before calling @setEnableAutomaticAnimation
-     * @param automaticAnimationDuration
+     * Scales the zoom around a point and pans it, both in view content coordinates.
      */
-    public void setAutomaticAnimationDuration(int automaticAnimationDuration) {
-        mAutomaticAnimationDuration = automaticAnimationDuration;
+    private void zoomBy(float scaleFactor, float focusX, float focusY, float panX, float panY) {
+        final float zoom = Math.max(1f, Math.min(mZoom * scaleFactor, mMaxZoom));
+        final float appliedFactor = zoom / mZoom;
+        mZoom = zoom;
+        // Keep the content under the focus where it is, then move it with the focus
+        mZoomTranslateX = focusX - appliedFactor * (focusX - mZoomTranslateX) + panX;
+        mZoomTranslateY = focusY - appliedFactor * (focusY - mZoomTranslateY) + panY;
+        updateZoomMatrix();
+        invalidate();
+    }
+
+    private boolean isZoomed() {
+        return mZoom > 1f;
+    }
+
+    private void updateZoomMatrix() {
+        // The zoomed content always covers the whole view
+        final int vwidth = getWidth() - getPaddingLeft() - getPaddingRight();
+        final int vheight = getHeight() - getPaddingTop() - getPaddingBottom();
+        mZoomTranslateX = Math.max(vwidth * (1f - mZoom), Math.min(mZoomTranslateX, 0));
+        mZoomTranslateY = Math.max(vheight * (1f - mZoom), Math.min(mZoomTranslateY, 0));
+
+        mZoomMatrix.setScale(mZoom, mZoom);
+        mZoomMatrix.postTranslate(mZoomTranslateX, mZoomTranslateY);
+
+        // The layers are drawn through the draw matrix, so the zoom is moved inside it
+        mZoomDrawMatrix.set(mZoomMatrix);
+        if (mDrawMatrix != null && mDrawMatrix.invert(mTempMatrix)) {
+            mZoomDrawMatrix.preConcat(mDrawMatrix);
+            mZoomDrawMatrix.postConcat(mTempMatrix);
+        }
     }
 
     /**
-     * Sets the alpha value that should be applied to the image.
-     *
-     * @param alpha the alpha value that should be applied to the image
-     *
-     * @deprecated use #setImageAlpha(int) instead
+     * @return The mipmap level to draw a layer from, or null if the layer should be drawn
+     * through its drawable
      */
-    @Deprecated
-    public void setAlpha(int alpha) {
-        alpha &= 0xFF;          // keep it legal
-        if (mAlpha != alpha) {
-            mAlpha = alpha;
-            mColorMod = true;
-            applyColorMod();
-            invalidate();
+    private Bitmap getMipmapLevel(Drawable drawable, boolean foreground) {
+        // Rotated camera photos are chosen from the levels of the bitmap as it was decoded
+        final boolean swapsDimensions = drawable instanceof OrientedDrawable
+                && OrientedDrawable.swapsDimensions(((OrientedDrawable) drawable).getOrientation());
+        Drawable layer = drawable instanceof OrientedDrawable
+                ? ((OrientedDrawable) drawable).getWrappedDrawable() : drawable;
+        if (!mZoomEnabled || !(layer instanceof BitmapDrawable)) {
+            return null;
+        }
+        BitmapDrawable bitmapDrawable = (BitmapDrawable) layer;
+        Bitmap bitmap = bitmapDrawable.getBitmap();
+        if (bitmap == null || bitmapDrawable.getGravity() != Gravity.FILL
+                || bitmapDrawable.getTileModeX() != null || bitmapDrawable.getTileModeY() != null) {
+            return null;
         }
-    }
 
-    @Override
+        LayerMipmap mipmap = foreground ? mForegroundMipmap : mBackgroundMipmap;
+        if (mipmap == null || mipmap.getSource() != bitmap) {
+            releaseMipmap(foreground);
+            mipmap = new LayerMipmap(bitmap, new Runnable() {
+                @Override
+                public void run() {
+                    LayerBudget.onLayersChanged(SplitImageView.this);
+                    invalidate();
+                }
+            });
+            if (foreground) {
+                mForegroundMipmap = mipmap;
+            } else {
+                mBackgroundMipmap = mipmap;
+            }
+        }
+
+        mTempSrc.set(drawable.getBounds());
+        if (mDrawMatrix != null) {
+            mDrawMatrix.mapRect(mTempSrc);
+        }
+        if (isZoomed()) {
+            mZoomMatrix.mapRect(mTempSrc);
+        }
+        Bitmap level = swapsDimensions ? mipmap.select(mTempSrc.height(), mTempSrc.width())
+                : mipmap.select(mTempSrc.width(), mTempSrc.height());
+        return level != bitmap ? level : null;
+    }
+
+    private void releaseMipmap(boolean foreground) {
+        LayerMipmap mipmap = foreground ? mForegroundMipmap : mBackgroundMipmap;
+        if (mipmap != null) {
+            mipmap.release();
+            if (foreground) {
+                mForegroundMipmap = null;
+            } else {
+                mBackgroundMipmap = null;
+            }
+        }
+    }
+
+    public boolean isBrushRevealEnabled() {
+        return mBrushRevealEnabled;
+    }
+
+    /**
+     * Enables or disables brush reveal mode.
+     *
+     * Instead of the diagonal split, the whole foreground is shown and dragging a finger paints
+     * the background into view like a scratch card. The foreground with the painted area cut out
+     * is kept in a bitmap the size of the view, each new stroke segment only composites the part
+     * of it the segment covers. The painted area sticks to the image when it is zoomed or
+     * panned with two fingers. It is cleared when the mode is turned off or the size of the view
+     * changes.
+     *
+     * @param brushRevealEnabled
+     * @see #undoRevealStroke()
+     * @see #resetReveal()
+     * @see #getRevealPercent()
+     */
+    public void setBrushRevealEnabled(boolean brushRevealEnabled) {
+        if (mBrushRevealEnabled != brushRevealEnabled) {
+            mBrushRevealEnabled = brushRevealEnabled;
+            mRevealStrokeActive = false;
+            if (!brushRevealEnabled && mRevealMask != null) {
+                mRevealMask = null;
+                mRevealComposite = null;
+                mRevealCompositeCanvas = null;
+                LayerBudget.onLayersChanged(this);
+            }
+            invalidate();
+        }
+    }
+
+    public float getRevealBrushRadius() {
+        return mRevealBrushRadius;
+    }
+
+    /**
+     * @param radius The radius of the reveal brush in pixels, takes effect with the next stroke
+     */
+    public void setRevealBrushRadius(float radius) {
+        if (radius <= 0) {
+            Log.e(TAG, "Reveal brush radius should be positive and not:" + radius);
+            return;
+        }
+        mRevealBrushRadius = radius;
+    }
+
+    /**
+     * Hides the background again, removing every stroke.
+     */
+    public void resetReveal() {
+        if (mRevealMask != null && mRevealMask.hasStrokes()) {
+            mRevealStrokeActive = false;
+            mRevealMask.reset();
+            invalidate();
+        }
+    }
+
+    /**
+     * Removes the last brush stroke.
+     *
+     * @return Whether there was a stroke to remove
+     */
+    public boolean undoRevealStroke() {
+        if (mRevealMask == null || !mRevealMask.undo()) {
+            return false;
+        }
+        mRevealStrokeActive = false;
+        invalidate();
+        return true;
+    }
+
+    /**
+     * @return How much of the background has been painted into view in brush reveal mode,
+     * between 0 and 100
+     */
+    public int getRevealPercent() {
+        return mRevealMask != null ? mRevealMask.getRevealPercent() : 0;
+    }
+
+    public boolean isDebugDrawEnabled() {
+        return mEnableDebugDraw;
+    }
+
+    /**
+     * This method will enable debug draw. It will draw a red border around the area that is
+     * masked/split, and a small overlay in the top left corner with the frame rate during drags
+     * and animations, the time the last frame took to draw, the number of split updates per
+     * frame and the decoded size and memory of each layer next to the size it is shown at.
+     *
+     * @param enableDebugDraw
+     */
+    public void setDebugDraw(boolean enableDebugDraw) {
+        if (mEnableDebugDraw != enableDebugDraw) {
+            mEnableDebugDraw = enableDebugDraw;
+            mDebugHud = enableDebugDraw ? new DebugHud(getResources().getDisplayMetrics().density) : null;
+            invalidate();
+        }
+    }
+
+    public boolean isEnableAutomaticAnimation() {
+        return mEnableAutomaticAnimation;
+    }
+
+    /**
+     * Will enable automatic animation. For this to work the foreground drawable & background
+     * drawable will have to be set. Also when enabled touch unveil will not work.
+     * @param enable
+     */
+    public void setEnableAutomaticAnimation(boolean enable) {
+        mEnableAutomaticAnimation = enable;
+        initGestureRecognizer();
+        if (mEnableAutomaticAnimation) {
+            startAutomaticAnimation();
+        } else {
+            stopAutomaticAnimation();
+        }
+    }
+
+    public int getSplitPercent() {
+        return mSplitPercent;
+    }
+
+    public int getMaxAnimationFrameRate() {
+        return mFrameRateLimiter.getMaxFrameRate();
+    }
+
+    /**
+     * Limits how often the automatic and snap animations redraw the view. Ambient animations
+     * look the same at 24 - 30 fps and only cost a fraction of the CPU time of the full
+     * display rate. By default there is no limit.
+     *
+     * Takes effect when the next animation starts.
+     *
+     * @param maxFrameRate The maximum number of frames per second, or 0 for no limit
+     */
+    public void setMaxAnimationFrameRate(int maxFrameRate) {
+        if (maxFrameRate < 0) {
+            Log.e(TAG, "Max animation frame rate should not be negative.");
+            return;
+        }
+        mFrameRateLimiter.setMaxFrameRate(maxFrameRate);
+    }
+
+    public boolean isReduceFrameRateInPowerSaveMode() {
+        return mFrameRateLimiter.isPowerSaveAware();
+    }
+
+    /**
+     * When enabled, animations that start while the device is in power save mode run at no more
+     * than 15 fps. Power save mode is only detected from Lollipop on.
+     *
+     * @param reduceFrameRate
+     * @see #setMaxAnimationFrameRate(int)
+     */
+    public void setReduceFrameRateInPowerSaveMode(boolean reduceFrameRate) {
+        mFrameRateLimiter.setPowerSaveAware(reduceFrameRate);
+    }
+
+    /**
+     * This method will set the percentage of split that is applied to the Images.
+     * Lesser the value more the amount that is reveled.
+     * By default this is 50%.
+     *
+     * When the view belongs to a {@link SplitGroup} this sets the split percent of the group.
+     *
+     * @param percent
+     */
+    public void setSplitPercent(int percent) {
+        if (percent >= 0 && percent <= 100) {
+            if (mDebugHud != null) {
+                mDebugHud.onSplitUpdate();
+            }
+            if (mSplitGroup != null) {
+                mSplitGroup.setSplitPercent(percent);
+                return;
+            }
+            mSplitPercent = percent;
+            createPathForSplitPercent(mSplitPercent);
+        } else {
+            Log.e(TAG, "Split percentage should be between 0 and 100.");
+        }
+    }
+
+    /**
+     * Sets the split percent from any thread, e.g. from a sensor or playback thread driving the
+     * split. Only the latest value is kept and it is applied on the main thread with the next
+     * animation frame, so any number of updates between two frames cost a single redraw.
+     *
+     * @param percent The split percent, between 0 and 100
+     * @see #setSplitPercent(int)
+     */
+    public void postSplitPercent(int percent) {
+        if (percent < 0 || percent > 100) {
+            Log.e(TAG, "Split percentage should be between 0 and 100.");
+            return;
+        }
+        if (mPostedSplitPercent.getAndSet(percent) == NO_POSTED_SPLIT_PERCENT) {
+            // The first update since the last frame schedules it, the others only replace the value
+            sMainHandler.post(mSchedulePostedSplitPercent);
+        }
+    }
+
+    /**
+     * Returns the group this view shares its split with, or null.
+     *
+     * @see SplitGroup#addView(SplitImageView)
+     */
+    public SplitGroup getSplitGroup() {
+        return mSplitGroup;
+    }
+
+    void setSplitGroup(SplitGroup splitGroup) {
+        mSplitGroup = splitGroup;
+    }
+
+    /**
+     * Called by the {@link SplitGroup} of this view once per frame with its latest split percent.
+     */
+    void applyGroupSplitPercent(int percent) {
+        if (mSplitPercent != percent) {
+            mSplitPercent = percent;
+            createPathForSplitPercent(mSplitPercent);
+        }
+    }
+
+    /**
+     * Returns the alpha that will be applied to the drawables of this SplitImageView.
+     *
+     * @return the alpha that will be applied to the drawable of this SplitImageView
+     *
+     * @see #setImageAlpha(int)
+     */
+    public int getImageAlpha() {
+        return mAlpha;
+    }
+
+    /**
+     * Sets the alpha value that should be applied to the image.
+     *
+     * @param alpha the alpha value that should be applied to the image
+     *
+     * @see #getImageAlpha()
+     */
+    public void setImageAlpha(int alpha) {
+        setAlpha(alpha);
+    }
+
+    public boolean unveilOnTouch() {
+        return mUnveilOnTouch;
+    }
+
+    /**
+     * Enables the touch to unveil feature
+     * @param unveilOnTouch
+     */
+    public void setUnveilOnTouch(boolean unveilOnTouch) {
+        mUnveilOnTouch = unveilOnTouch;
+        initGestureRecognizer();
+    }
+
+    public int getAutomaticAnimationDuration() {
+        return mAutomaticAnimationDuration;
+    }
+
+    /**
+     * Set the duration of the automatic animation.
+     * If the automatic animation has already started this won't take effect.
+     * Call this before calling @setEnableAutomaticAnimation
+     * @param automaticAnimationDuration
+     */
+    public void setAutomaticAnimationDuration(int automaticAnimationDuration) {
+        mAutomaticAnimationDuration = automaticAnimationDuration;
+    }
+
+    /**
+     * Sets the alpha value that should be applied to the image.
+     *
+     * @param alpha the alpha value that should be applied to the image
+     *
+     * @deprecated use #setImageAlpha(int) instead
+     */
+    @Deprecated
+    public void setAlpha(int alpha) {
+        alpha &= 0xFF;          // keep it legal
+        if (mAlpha != alpha) {
+            mAlpha = alpha;
+            mColorMod = true;
+            applyColorMod();
+            invalidate();
+        }
+    }
+
+    @Override
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
         super.onSizeChanged(w, h, oldw, oldh);
         mHaveFrame = true;
         configureBounds();
+        resolveDeferredLayers();
     }
 
     @Override
@@ -623,6 +1502,29 @@ public class SplitImageView extends View {
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
 
+        if (mDebugHud == null) {
+            drawContent(canvas);
+        } else {
+            mDebugHud.onFrameStart();
+            drawContent(canvas);
+            mDebugHud.onFrameEnd();
+            mDebugHud.draw(canvas, getScrollX(), getScrollY(), mForegroundDrawable, mBackgroundDrawable,
+                    mDrawMatrix);
+        }
+    }
+
+    private void drawContent(Canvas canvas) {
+        mLastDrawnTime = SystemClock.uptimeMillis();
+        if (mLayersReleased) {
+            // Released Uri layers come back through background decodes, not in this frame
+            resolveUris();
+            mLayersReleased = false;
+        }
+        // A view drawn off screen, e.g. by a list building its cache, stays downgraded
+        if ((mForegroundDowngraded || mBackgroundDowngraded) && isOnScreen()) {
+            upgradeLayers();
+        }
+
         if (mForegroundDrawable == null && mBackgroundDrawable == null) {
             return; // couldn't resolve the URI
         }
@@ -632,19 +1534,11 @@ public class SplitImageView extends View {
         }
 
         if (mDrawMatrix == null && getPaddingTop() == 0 && getPaddingLeft() == 0) {
-            if (mBackgroundDrawable != null) {
-                mBackgroundDrawable.draw(canvas);
-            }
-
-            if (mSplitDrawPath != null) {
-                canvas.clipPath(mSplitDrawPath);
-            }
+            drawLayer(canvas, false);
 
-            if (mForegroundDrawable != null) {
-                mForegroundDrawable.draw(canvas);
-            }
+            drawForeground(canvas);
 
-            if (mEnableDebugDraw && mSplitDrawPath != null) {
+            if (mEnableDebugDraw && mSplitDrawPath != null && !mBrushRevealEnabled) {
                 canvas.drawPath(mSplitDrawPath, mDebugDrawPaint);
             }
         } else {
@@ -664,10 +1558,23 @@ public class SplitImageView extends View {
             if (mDrawMatrix != null) {
                 canvas.concat(mDrawMatrix);
             }
-            if (mBackgroundDrawable != null) {
-                mBackgroundDrawable.draw(canvas);
+            drawLayer(canvas, false);
+
+            drawForeground(canvas);
+
+            if (mEnableDebugDraw && mSplitDrawPath != null && !mBrushRevealEnabled) {
+                canvas.drawPath(mSplitDrawPath, mDebugDrawPaint);
             }
+            canvas.restoreToCount(saveCount);
+        }
+    }
 
+    /**
+     * Draws the foreground over the background, clipped by the split or, in brush reveal mode,
+     * with the revealed parts cut out.
+     */
+    private void drawForeground(Canvas canvas) {
+        if (!mBrushRevealEnabled) {
             /**
              * Add a clipping path
              */
@@ -675,211 +1582,1225 @@ public class SplitImageView extends View {
                 canvas.clipPath(mSplitDrawPath);
             }
 
-            if (mForegroundDrawable != null) {
-                mForegroundDrawable.draw(canvas);
+            drawLayer(canvas, true);
+            drawDifferenceHeatmap(canvas);
+            return;
+        }
+
+        if (mRevealMask == null || !mRevealMask.hasStrokes()) {
+            drawLayer(canvas, true);
+            drawDifferenceHeatmap(canvas);
+            return;
+        }
+
+        // The composite is in view content coordinates, undo the draw matrix
+        if (updateRevealComposite()) {
+            int saveCount = canvas.save();
+            if (mDrawMatrix != null && mDrawMatrix.invert(mTempMatrix)) {
+                canvas.concat(mTempMatrix);
+            }
+            canvas.drawBitmap(mRevealComposite, 0, 0, null);
+            canvas.restoreToCount(saveCount);
+            return;
+        }
+
+        // Without memory for the composite the foreground is cut out in an offscreen layer
+        // covering the clip
+        canvas.getClipBounds(mTempInvalidate);
+        int saveCount = canvas.saveLayer(mTempInvalidate.left, mTempInvalidate.top, mTempInvalidate.right,
+                mTempInvalidate.bottom, null, Canvas.ALL_SAVE_FLAG);
+        drawLayer(canvas, true);
+        drawDifferenceHeatmap(canvas);
+
+        // The mask is in unzoomed view content coordinates, undo the draw matrix
+        if (mDrawMatrix != null && mDrawMatrix.invert(mTempMatrix)) {
+            canvas.concat(mTempMatrix);
+        }
+        if (isZoomed()) {
+            canvas.concat(mZoomMatrix);
+        }
+        canvas.drawBitmap(mRevealMask.getBitmap(), 0, 0, mRevealMaskPaint);
+        canvas.restoreToCount(saveCount);
+    }
+
+    /**
+     * Composites the dirty part of the foreground with the revealed parts cut out.
+     *
+     * @return Whether the composite is ready to be drawn, false if it could not be allocated
+     */
+    private boolean updateRevealComposite() {
+        final int width = mRevealMask.getWidth();
+        final int height = mRevealMask.getHeight();
+        if (mRevealComposite == null || mRevealComposite.getWidth() != width
+                || mRevealComposite.getHeight() != height) {
+            mRevealComposite = null;
+            mRevealCompositeCanvas = null;
+            try {
+                mRevealComposite = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            } catch (OutOfMemoryError e) {
+                Log.w(TAG, "Unable to allocate a reveal composite of " + width + "x" + height);
+                return false;
+            }
+            mRevealCompositeCanvas = new Canvas(mRevealComposite);
+            mRevealCompositeInvalid = true;
+            LayerBudget.onLayersChanged(this);
+        }
+
+        if (mRevealCompositeInvalid) {
+            mRevealCompositeInvalid = false;
+            mRevealCompositeDirty.set(0, 0, width, height);
+        } else if (!mRevealCompositeDirty.intersect(0, 0, width, height)) {
+            mRevealCompositeDirty.setEmpty();
+        }
+        if (mRevealCompositeDirty.isEmpty()) {
+            return true;
+        }
+
+        Canvas canvas = mRevealCompositeCanvas;
+        int saveCount = canvas.save();
+        canvas.clipRect(mRevealCompositeDirty);
+        canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        canvas.save();
+        if (mDrawMatrix != null) {
+            canvas.concat(mDrawMatrix);
+        }
+        drawLayer(canvas, true);
+        drawDifferenceHeatmap(canvas);
+        canvas.restore();
+        if (isZoomed()) {
+            canvas.concat(mZoomMatrix);
+        }
+        canvas.drawBitmap(mRevealMask.getBitmap(), 0, 0, mRevealMaskPaint);
+        canvas.restoreToCount(saveCount);
+        mRevealCompositeDirty.setEmpty();
+        return true;
+    }
+
+    private void drawLayer(Canvas canvas, boolean foreground) {
+        if (isZoomed()) {
+            int saveCount = canvas.save();
+            canvas.concat(mZoomDrawMatrix);
+            drawLayerContent(canvas, foreground);
+            canvas.restoreToCount(saveCount);
+        } else {
+            drawLayerContent(canvas, foreground);
+        }
+    }
+
+    private void drawLayerContent(Canvas canvas, boolean foreground) {
+        Drawable drawable = foreground ? mForegroundDrawable : mBackgroundDrawable;
+        if (drawable == null) {
+            return;
+        }
+
+        Bitmap baked = getBakedBitmap(foreground);
+        if (baked != null) {
+            mLayerPaint.setAlpha(mAlpha * mViewAlphaScale >> 8);
+            drawLayerBitmap(canvas, baked, drawable, mLayerPaint);
+            return;
+        }
+
+        Bitmap raster = getRasterBitmap(drawable, foreground);
+        if (raster != null) {
+            // The alpha and color filter of the layer are part of the raster
+            final Rect bounds = drawable.getBounds();
+            canvas.drawBitmap(raster, bounds.left, bounds.top, mRasterPaint);
+            return;
+        }
+
+        Bitmap level = getMipmapLevel(drawable, foreground);
+        if (level != null) {
+            // The paint carries the alpha and color filter of the layer
+            BitmapDrawable layer = (BitmapDrawable) (drawable instanceof OrientedDrawable
+                    ? ((OrientedDrawable) drawable).getWrappedDrawable() : drawable);
+            drawLayerBitmap(canvas, level, drawable, layer.getPaint());
+        } else {
+            drawable.draw(canvas);
+        }
+    }
+
+    /**
+     * Draws a bitmap in place of a layer drawable, through the orientation of an
+     * {@link OrientedDrawable}.
+     */
+    private static void drawLayerBitmap(Canvas canvas, Bitmap bitmap, Drawable drawable, Paint paint) {
+        if (drawable instanceof OrientedDrawable) {
+            OrientedDrawable oriented = (OrientedDrawable) drawable;
+            int saveCount = canvas.save();
+            canvas.concat(oriented.getOrientationMatrix());
+            canvas.drawBitmap(bitmap, null, oriented.getWrappedDrawable().getBounds(), paint);
+            canvas.restoreToCount(saveCount);
+        } else {
+            canvas.drawBitmap(bitmap, null, drawable.getBounds(), paint);
+        }
+    }
+
+    /**
+     * @return The rasterized layer, or null if the layer should be drawn through its drawable
+     */
+    private Bitmap getRasterBitmap(Drawable drawable, boolean foreground) {
+        if (!mRasterizeLayers || LayerBudget.getLayerBitmap(drawable) != null) {
+            return null;
+        }
+
+        RasterizedLayer raster = foreground ? mForegroundRaster : mBackgroundRaster;
+        Bitmap cached = raster.getBitmap();
+        Bitmap bitmap = raster.get(drawable);
+        if (bitmap != cached) {
+            LayerBudget.onLayersChanged(this);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Returns the bitmap of a layer with its color filter applied, filtering it the first time.
+     *
+     * @return The baked bitmap, or null if the layer should be drawn through its drawable
+     */
+    private Bitmap getBakedBitmap(boolean foreground) {
+        if (!mBakeColorFilters) {
+            return null;
+        }
+
+        Bitmap baked = foreground ? mForegroundBakedBitmap : mBackgroundBakedBitmap;
+        if (baked != null || (foreground ? mForegroundBakeFailed : mBackgroundBakeFailed)) {
+            return baked;
+        }
+
+        Drawable drawable = foreground ? mForegroundDrawable : mBackgroundDrawable;
+        ColorFilter colorFilter = foreground ? mForegroundColorFilter : mBackgroundColorFilter;
+        // Oriented layers are baked as decoded and drawn through their orientation
+        Bitmap source = LayerBudget.getLayerBitmap(drawable);
+        if (colorFilter == null || source == null) {
+            return null;
+        }
+
+        try {
+            baked = Bitmap.createBitmap(source.getWidth(), source.getHeight(), Bitmap.Config.ARGB_8888);
+        } catch (OutOfMemoryError e) {
+            Log.w(TAG, "Unable to bake a layer of " + source.getWidth() + "x" + source.getHeight());
+            if (foreground) {
+                mForegroundBakeFailed = true;
+            } else {
+                mBackgroundBakeFailed = true;
+            }
+            return null;
+        }
+        mBakePaint.setColorFilter(colorFilter);
+        new Canvas(baked).drawBitmap(source, 0, 0, mBakePaint);
+        mBakePaint.setColorFilter(null);
+
+        if (foreground) {
+            mForegroundBakedBitmap = baked;
+        } else {
+            mBackgroundBakedBitmap = baked;
+        }
+        LayerBudget.onLayersChanged(this);
+        return baked;
+    }
+
+    /**
+     * Draws the cached difference heatmap, or starts computing it. The canvas is expected to be
+     * set up for drawing the foreground, i.e. transformed by the draw matrix and clipped to the
+     * split.
+     */
+    private void drawDifferenceHeatmap(Canvas canvas) {
+        if (!mShowDifferenceHeatmap) {
+            return;
+        }
+
+        if (mDifferenceHeatmap == null) {
+            // Capturing the layers allocates two bitmaps the size of the view, not in the draw pass
+            if (!mDifferenceHeatmapPending && !mDifferenceHeatmapFailed && !mDifferenceHeatmapRequestQueued) {
+                mDifferenceHeatmapRequestQueued = true;
+                sMainHandler.post(mRequestDifferenceHeatmap);
+            }
+            return;
+        }
+
+        // The heatmap is in view content coordinates, undo the draw matrix
+        if (mDrawMatrix != null || isZoomed()) {
+            int saveCount = canvas.save();
+            if (mDrawMatrix != null) {
+                canvas.concat(mDifferenceHeatmapMatrix);
+            }
+            if (isZoomed()) {
+                canvas.concat(mZoomMatrix);
+            }
+            canvas.drawBitmap(mDifferenceHeatmap, 0, 0, null);
+            canvas.restoreToCount(saveCount);
+        } else {
+            canvas.drawBitmap(mDifferenceHeatmap, 0, 0, null);
+        }
+    }
+
+    private void requestDifferenceHeatmap() {
+        final int width = getWidth() - getPaddingLeft() - getPaddingRight();
+        final int height = getHeight() - getPaddingTop() - getPaddingBottom();
+        if (mDifferenceHeatmapPending || !mHaveFrame || width <= 0 || height <= 0
+                || mForegroundDrawable == null || mBackgroundDrawable == null) {
+            return;
+        }
+
+        if (mDrawMatrix != null && !mDrawMatrix.invert(mDifferenceHeatmapMatrix)) {
+            return;
+        }
+
+        // Drawables can only be drawn on this thread, the comparison itself runs in the background
+        final Bitmap foreground;
+        final Bitmap background;
+        try {
+            foreground = captureLayer(mForegroundDrawable, width, height);
+            background = captureLayer(mBackgroundDrawable, width, height);
+        } catch (OutOfMemoryError e) {
+            Log.w(TAG, "Not enough memory for the difference heatmap");
+            mDifferenceHeatmapFailed = true;
+            return;
+        }
+        final int generation = mDifferenceHeatmapGeneration;
+        final int threshold = mDifferenceHeatmapThreshold;
+
+        mDifferenceHeatmapPending = true;
+        DecodeScheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                Bitmap heatmap = null;
+                try {
+                    heatmap = DifferenceHeatmap.compute(foreground, background, threshold);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Throwable t) {
+                    Log.w(TAG, "Unable to compute the difference heatmap", t);
+                } finally {
+                    foreground.recycle();
+                    background.recycle();
+                }
+
+                // View.post() from this thread is dropped while the view is detached before API 24
+                final Bitmap result = heatmap;
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == mDifferenceHeatmapGeneration) {
+                            mDifferenceHeatmapPending = false;
+                            mDifferenceHeatmap = result;
+                            mDifferenceHeatmapFailed = result == null;
+                            invalidate();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private Bitmap captureLayer(Drawable drawable, int width, int height) {
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        if (mDrawMatrix != null) {
+            canvas.concat(mDrawMatrix);
+        }
+        drawable.draw(canvas);
+        return bitmap;
+    }
+
+    private void invalidateDifferenceHeatmap() {
+        mDifferenceHeatmapGeneration++;
+        mDifferenceHeatmapPending = false;
+        mDifferenceHeatmapFailed = false;
+        mDifferenceHeatmap = null;
+    }
+
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        // Anything the foreground is drawn with may have changed, e.g. the matrix or the filter
+        mRevealCompositeInvalid = true;
+    }
+
+    @Override
+    public void invalidateDrawable(Drawable dr) {
+        if (dr == mForegroundDrawable || dr == mBackgroundDrawable) {
+            (dr == mForegroundDrawable ? mForegroundRaster : mBackgroundRaster).invalidate();
+            invalidateLayer(dr);
+        } else {
+            super.invalidateDrawable(dr);
+        }
+    }
+
+    /**
+     * Invalidates only the part of the view an animated layer can change. The dirty bounds of
+     * the layer are limited to where the layer is visible, i.e. the foreground inside the split
+     * and the background wherever an opaque foreground does not cover it, and then run through
+     * the draw matrix, the padding and the scroll offsets.
+     */
+    private void invalidateLayer(Drawable dr) {
+        if (isZoomed()) {
+            invalidate();
+            return;
+        }
+        mTempDirty.set(dr.getDirtyBounds());
+
+        if (mSplitDrawPath != null && !mBrushRevealEnabled) {
+            if (dr == mForegroundDrawable) {
+                if (!mTempDirty.intersect(mSplitPathBounds)) {
+                    return;
+                }
+            } else if (isHiddenByForeground(mTempDirty)) {
+                return;
+            }
+        }
+
+        if (mDrawMatrix != null) {
+            mDrawMatrix.mapRect(mTempDirty);
+        }
+        mTempDirty.roundOut(mTempInvalidate);
+        if (dr == mForegroundDrawable && mBrushRevealEnabled) {
+            mRevealCompositeDirty.union(mTempInvalidate);
+        }
+
+        final int scrollX = getScrollX() + getPaddingLeft();
+        final int scrollY = getScrollY() + getPaddingTop();
+        invalidate(mTempInvalidate.left + scrollX, mTempInvalidate.top + scrollY,
+                mTempInvalidate.right + scrollX, mTempInvalidate.bottom + scrollY);
+    }
+
+    private boolean isHiddenByForeground(RectF rect) {
+        if (mForegroundDrawable == null || mForegroundDrawable.getOpacity() != PixelFormat.OPAQUE) {
+            return false;
+        }
+
+        Rect foregroundBounds = mForegroundDrawable.getBounds();
+        if (rect.left < foregroundBounds.left || rect.top < foregroundBounds.top
+                || rect.right > foregroundBounds.right || rect.bottom > foregroundBounds.bottom) {
+            return false;
+        }
+
+        // The split is convex, so the rect is inside it when all of its corners are
+        return isInsideSplit(rect.left, rect.top) && isInsideSplit(rect.right, rect.top)
+                && isInsideSplit(rect.left, rect.bottom) && isInsideSplit(rect.right, rect.bottom);
+    }
+
+    private boolean isInsideSplit(float x, float y) {
+        if (mSplitPathTop >= mSplitPathHeight || mSplitPathRight <= 0) {
+            return false;   // empty split
+        }
+        if (x < 0 || y > mSplitPathHeight) {
+            return false;
+        }
+        // On the same side of the hypotenuse as the (0, height) corner
+        return mSplitPathRight * (y - mSplitPathTop) - (mSplitPathHeight - mSplitPathTop) * x >= 0;
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mAttachedToWindow = true;
+        mReportedViolations &= ~SplitDiagnostics.VIOLATION_ANIMATION_WHILE_DETACHED;
+        if (mBackgroundDrawable != null) {
+            mBackgroundDrawable.setVisible(getVisibility() == VISIBLE, false);
+        }
+        if (mForegroundDrawable != null) {
+            mForegroundDrawable.setVisible(getVisibility() == VISIBLE, false);
+        }
+        resolveDeferredLayers();
+        resumeLayerLoads();
+        // Loads started while detached
+        updateScrollListener();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mAttachedToWindow = false;
+        if (mBackgroundDrawable != null) {
+            mBackgroundDrawable.setVisible(false, false);
+        }
+        if (mForegroundDrawable != null) {
+            mForegroundDrawable.setVisible(false, false);
+        }
+        interruptLayerLoads();
+        // The frame a posted split percent waits for may never come
+        removeCallbacks(mApplyPostedSplitPercent);
+        mApplyPostedSplitPercent.run();
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateLayerLoadPriority();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateLayerLoadPriority();
+    }
+
+    @Override
+    public void onInitializeAccessibilityEvent(AccessibilityEvent event) {
+        super.onInitializeAccessibilityEvent(event);
+        event.setClassName(SplitImageView.class.getName());
+    }
+
+    @Override
+    public void onPopulateAccessibilityEvent(AccessibilityEvent event) {
+        super.onPopulateAccessibilityEvent(event);
+        CharSequence contentDescription = getContentDescription();
+        if (!TextUtils.isEmpty(contentDescription)) {
+            event.getText().add(contentDescription);
+        }
+    }
+
+    @Override
+    public void onInitializeAccessibilityNodeInfo(AccessibilityNodeInfo info) {
+        super.onInitializeAccessibilityNodeInfo(info);
+        info.setClassName(SplitImageView.class.getName());
+    }
+
+    @Override
+    protected boolean verifyDrawable(Drawable dr) {
+        return mForegroundDrawable == dr || mBackgroundDrawable == dr || super.verifyDrawable(dr);
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        final int action = event.getActionMasked();
+        if (action == MotionEvent.ACTION_DOWN) {
+            mMultiTouchGesture = false;
+        }
+
+        if (mZoomEnabled) {
+            mScaleGestureDetector.onTouchEvent(event);
+            if (action == MotionEvent.ACTION_POINTER_DOWN && !mMultiTouchGesture) {
+                mMultiTouchGesture = true;
+                // A second finger turns the gesture into a pinch, the split stays where it is
+                if (mUnveilGestureEnabled) {
+                    MotionEvent cancel = MotionEvent.obtain(event);
+                    cancel.setAction(MotionEvent.ACTION_CANCEL);
+                    mGestureDetector.onTouchEvent(cancel);
+                    cancel.recycle();
+                }
+            }
+        }
+
+        if (mBrushRevealEnabled) {
+            if (!mMultiTouchGesture) {
+                onRevealTouch(event, action);
+            } else {
+                mRevealStrokeActive = false;
+            }
+            return true;
+        }
+
+        if (mUnveilGestureEnabled && !mMultiTouchGesture) {
+            mGestureDetector.onTouchEvent(event);
+        }
+
+        if (action == MotionEvent.ACTION_UP && !mMultiTouchGesture) {
+            snapSplitToBounds();
+        }
+        return mUnveilOnTouch || mZoomEnabled;
+    }
+
+    private void onRevealTouch(MotionEvent event, int action) {
+        RevealMask mask = getRevealMask();
+        if (mask == null) {
+            return;
+        }
+
+        // The mask is in unzoomed view content coordinates, so strokes stay on the part of the
+        // image they revealed when the view is zoomed or panned
+        final float scale = isZoomed() ? mZoom : 1f;
+        final float offsetX = getPaddingLeft() + (isZoomed() ? mZoomTranslateX : 0);
+        final float offsetY = getPaddingTop() + (isZoomed() ? mZoomTranslateY : 0);
+        switch (action) {
+            case MotionEvent.ACTION_DOWN:
+                mRevealStrokeActive = true;
+                // The brush keeps its size on screen
+                mask.startStroke((event.getX() - offsetX) / scale, (event.getY() - offsetY) / scale,
+                        mRevealBrushRadius / scale, mTempReveal);
+                invalidateReveal();
+                break;
+            case MotionEvent.ACTION_MOVE:
+                if (!mRevealStrokeActive) {
+                    break;
+                }
+                // Moves are batched, the points in between keep fast strokes smooth
+                for (int i = 0; i < event.getHistorySize(); i++) {
+                    mask.extendStroke((event.getHistoricalX(i) - offsetX) / scale,
+                            (event.getHistoricalY(i) - offsetY) / scale, mTempReveal);
+                    invalidateReveal();
+                }
+                mask.extendStroke((event.getX() - offsetX) / scale, (event.getY() - offsetY) / scale, mTempReveal);
+                invalidateReveal();
+                break;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                mRevealStrokeActive = false;
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Invalidates the part of the view the last stroke segment changed.
+     */
+    private void invalidateReveal() {
+        if (isZoomed()) {
+            mZoomMatrix.mapRect(mTempReveal);
+        }
+        mTempReveal.roundOut(mTempInvalidate);
+        // One more pixel for the antialiased edge
+        mTempInvalidate.inset(-1, -1);
+        mRevealCompositeDirty.union(mTempInvalidate);
+        final int scrollX = getScrollX() + getPaddingLeft();
+        final int scrollY = getScrollY() + getPaddingTop();
+        invalidate(mTempInvalidate.left + scrollX, mTempInvalidate.top + scrollY,
+                mTempInvalidate.right + scrollX, mTempInvalidate.bottom + scrollY);
+    }
+
+    /**
+     * @return The mask for the current size of the view, or null if the view has no size yet
+     */
+    private RevealMask getRevealMask() {
+        final int width = getWidth() - getPaddingLeft() - getPaddingRight();
+        final int height = getHeight() - getPaddingTop() - getPaddingBottom();
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        if (mRevealMask == null || mRevealMask.getWidth() != width || mRevealMask.getHeight() != height) {
+            mRevealMask = new RevealMask(width, height);
+            mRevealStrokeActive = false;
+            LayerBudget.onLayersChanged(this);
+        }
+        return mRevealMask;
+    }
+
+    private boolean isChangingConfigurations() {
+        Context context = getContext();
+        while (context instanceof ContextWrapper) {
+            if (context instanceof Activity) {
+                return ((Activity) context).isChangingConfigurations();
+            }
+            context = ((ContextWrapper) context).getBaseContext();
+        }
+        return false;
+    }
+
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        // State is also saved for the back stack, only a configuration change recreates the
+        // view right away. Layers still loading in the background are only previews and not
+        // worth keeping.
+        if (isChangingConfigurations()) {
+            if (mForegroundLoad == null && mPendingForegroundLayer == null) {
+                LayerRetainer.retain(mForegroundSource, mForegroundDrawable);
+            }
+            if (mBackgroundLoad == null && mPendingBackgroundLayer == null) {
+                LayerRetainer.retain(mBackgroundSource, mBackgroundDrawable);
+            }
+        }
+
+        Parcelable parcelable = super.onSaveInstanceState();
+        SavedState savedState = new SavedState(parcelable);
+        savedState.splitPercent = mSplitPercent;
+        savedState.automaticAnimationTowardsMax = mAutomaticAnimationTowardsMax;
+        return savedState;
+    }
+
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof  SavedState)) {
+            super.onRestoreInstanceState(state);
+            return;
+        }
+
+        SavedState savedState = (SavedState)state;
+        super.onRestoreInstanceState(savedState.getSuperState());
+        mAutomaticAnimationTowardsMax = savedState.automaticAnimationTowardsMax;
+        if (mSplitGroup != null) {
+            mSplitGroup.setSplitPercent(savedState.splitPercent);
+        }
+        if (mSplitPercent != savedState.splitPercent) {
+            mSplitPercent = savedState.splitPercent;
+            createPathForSplitPercent(mSplitPercent);
+        }
+
+        // Continue from the restored phase instead of the one the animation was started with
+        if (mEnableAutomaticAnimation && isAutomaticAnimationRunning()) {
+            cancelAutomaticAnimation();
+            startAutomaticAnimation();
+        }
+    }
+
+    private void initImageView() {
+        setLayerType(LAYER_TYPE_SOFTWARE, null);
+        mMatrix     = new Matrix();
+        mScaleType  = ScaleType.FIT_CENTER;
+
+        mDebugDrawPaint = new Paint();
+        mDebugDrawPaint.setColor(Color.RED);
+        mDebugDrawPaint.setStrokeWidth(5);
+        mDebugDrawPaint.setStyle(Paint.Style.STROKE);
+
+        mRevealBrushRadius = DEFAULT_REVEAL_BRUSH_RADIUS_DP * getResources().getDisplayMetrics().density;
+        // Painted parts of the mask punch the foreground out
+        mRevealMaskPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.DST_OUT));
+
+        TrimMemoryDispatcher.register(this);
+    }
+
+    /**
+     * Called by {@link TrimMemoryDispatcher} when the system asks the application to trim memory.
+     * Layers of views that are detached, or invisible once memory is getting low, are dropped
+     * and decoded again from their sources the next time the view is measured or drawn.
+     */
+    void onTrimMemory(int level) {
+        boolean visible = mAttachedToWindow && isShown() && getWindowVisibility() == VISIBLE;
+        if (!mAttachedToWindow
+                || (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW && !visible)) {
+            releaseLayers();
+        }
+    }
+
+    long getLastDrawnTime() {
+        return mLastDrawnTime;
+    }
+
+    boolean isOnScreen() {
+        return mAttachedToWindow && isShown() && getWindowVisibility() == VISIBLE
+                && getGlobalVisibleRect(mTempInvalidate);
+    }
+
+    /**
+     * @return The bytes of all bitmaps held for the layers of this view
+     */
+    long getLayerByteCount() {
+        return getLayerByteCount(LayerBudget.newBitmapSet());
+    }
+
+    /**
+     * @param counted Bitmaps counted so far, the bitmaps of this view are added to it
+     * @return The bytes of the bitmaps held for the layers of this view that were not counted
+     * yet, layers copied from another view share its bitmaps
+     */
+    long getLayerByteCount(Set<Bitmap> counted) {
+        return LayerBudget.count(counted, LayerBudget.getLayerBitmap(mForegroundDrawable))
+                + LayerBudget.count(counted, LayerBudget.getLayerBitmap(mBackgroundDrawable))
+                + LayerBudget.count(counted, LayerBudget.getLayerBitmap(mPendingForegroundLayer))
+                + LayerBudget.count(counted, LayerBudget.getLayerBitmap(mPendingBackgroundLayer))
+                + LayerBudget.count(counted, mForegroundBakedBitmap)
+                + LayerBudget.count(counted, mBackgroundBakedBitmap)
+                + LayerBudget.count(counted, mForegroundRaster.getBitmap())
+                + LayerBudget.count(counted, mBackgroundRaster.getBitmap())
+                + (mForegroundMipmap != null ? mForegroundMipmap.getByteCount() : 0)
+                + (mBackgroundMipmap != null ? mBackgroundMipmap.getByteCount() : 0)
+                + (mRevealMask != null ? mRevealMask.getByteCount() : 0)
+                + LayerBudget.count(counted, mRevealComposite);
+    }
+
+    /**
+     * Called by {@link LayerBudget}, starts decoding smaller copies of the layers that are
+     * decoded from Uris by the view itself. The full layers are decoded again once the view is
+     * drawn on screen.
+     *
+     * @return Whether any layer is being downgraded
+     */
+    boolean downgradeLayers() {
+        final boolean foreground = downgradeLayer(true);
+        final boolean background = downgradeLayer(false);
+        return foreground || background;
+    }
+
+    private boolean downgradeLayer(boolean forForegroundContent) {
+        ImageSource source = forForegroundContent ? mForegroundSource : mBackgroundSource;
+        Drawable drawable = forForegroundContent ? mForegroundDrawable : mBackgroundDrawable;
+        // Layers of an ImageLoader are left to its own caching and evicted instead, a decode
+        // here would duplicate the work and memory the loader is there to save
+        if (mImageLoader != null || sDefaultImageLoader != null) {
+            return false;
+        }
+        if (source == null || source.type != ImageSource.TYPE_URI || drawable == null
+                || (forForegroundContent ? mForegroundDowngraded : mBackgroundDowngraded)
+                || (forForegroundContent ? mForegroundLoad : mBackgroundLoad) != null) {
+            return false;
+        }
+
+        Bitmap bitmap = LayerBudget.getLayerBitmap(drawable);
+        final int reqWidth = drawable.getIntrinsicWidth() / LayerBudget.DOWNGRADE_FACTOR;
+        final int reqHeight = drawable.getIntrinsicHeight() / LayerBudget.DOWNGRADE_FACTOR;
+        // Not worth it unless the copy is at most half as wide
+        if (bitmap == null || reqWidth <= 0 || reqHeight <= 0
+                || Math.max(bitmap.getWidth(), bitmap.getHeight()) / 2
+                < Math.max(reqWidth, reqHeight)) {
+            return false;
+        }
+
+        if (forForegroundContent) {
+            mForegroundDowngraded = true;
+        } else {
+            mBackgroundDowngraded = true;
+        }
+        startLayerLoad(source.uri, forForegroundContent, reqWidth, reqHeight);
+        return true;
+    }
+
+    private void upgradeLayers() {
+        if (mForegroundDowngraded) {
+            mForegroundDowngraded = false;
+            upgradeLayer(mForegroundSource, true);
+        }
+        if (mBackgroundDowngraded) {
+            mBackgroundDowngraded = false;
+            upgradeLayer(mBackgroundSource, false);
+        }
+    }
+
+    private void upgradeLayer(ImageSource source, boolean forForegroundContent) {
+        // The layer may have been set to a drawable since
+        if (source != null && source.type == ImageSource.TYPE_URI
+                && (forForegroundContent ? mForegroundDrawable : mBackgroundDrawable) != null) {
+            cancelLayerLoad(forForegroundContent);
+            // A loader set since the layer was downgraded delivers the full image itself
+            ImageLoader loader = mImageLoader != null ? mImageLoader : sDefaultImageLoader;
+            if (loader != null) {
+                startImageLoad(loader, source, forForegroundContent);
+            } else {
+                startLayerLoad(source.uri, forForegroundContent);
+            }
+        }
+    }
+
+    /**
+     * Called by {@link LayerBudget} when downgrading the layers did not free enough memory.
+     */
+    void evictLayers() {
+        releaseLayers();
+    }
+
+    private void releaseLayers() {
+        // Only layers that can be decoded again are released, the content size is kept so that
+        // re-resolving them does not cause a layout pass
+        if (mForegroundSource != null && mForegroundDrawable != null) {
+            updateDrawable(null, true);
+            mLayersReleased = true;
+        }
+        if (mBackgroundSource != null && mBackgroundDrawable != null) {
+            updateDrawable(null, false);
+            mLayersReleased = true;
+        }
+        // Composited again from the mask when the view is drawn
+        mRevealComposite = null;
+        mRevealCompositeCanvas = null;
+    }
+
+    private void resolveUris() {
+        resolveUri(false);
+        resolveUri(true);
+    }
+
+    private void resolveUri(boolean forForegroundContent) {
+        Drawable drawable = forForegroundContent ? mForegroundDrawable : mBackgroundDrawable;
+        if (drawable != null) {
+            return;
+        }
+
+        // The layer is decoded from scratch and at full size
+        if (forForegroundContent) {
+            mForegroundDowngraded = false;
+        } else {
+            mBackgroundDowngraded = false;
+        }
+
+        if (mLazyDecode && !(mAttachedToWindow && mHaveFrame)) {
+            return;
+        }
+
+        Resources rsrc = getResources();
+        if (rsrc == null) {
+            return;
+        }
+
+        ImageSource source = forForegroundContent ? mForegroundSource : mBackgroundSource;
+        if (source == null) {
+            return;
+        }
+
+        if ((forForegroundContent ? mForegroundImageLoad : mBackgroundImageLoad) != null
+                || (forForegroundContent ? mForegroundLoad : mBackgroundLoad) != null) {
+            return;     // the image loader or a background decode is still working on it
+        }
+
+        Drawable d;
+        boolean loadInBackground = false;
+        ImageLoader loader = mImageLoader != null ? mImageLoader : sDefaultImageLoader;
+
+        Drawable retained = LayerRetainer.take(source, mLazyDecode ? getDecodeWidth() : 0,
+                mLazyDecode ? getDecodeHeight() : 0);
+        if (retained != null) {
+            // Decoded by the view this one replaces, e.g. before a configuration change
+            d = retained;
+        } else if (loader != null) {
+            startImageLoad(loader, source, forForegroundContent);
+            return;
+        } else if (mProgressiveLoading && canDecodeInBackground(source)) {
+            // Show a cheap preview right away, the full image is decoded in the background
+            d = LayerDecoder.decodePreview(getContext(), source.uri, getPreviewWidth(), getPreviewHeight());
+            loadInBackground = d != null;
+        } else if ((mLazyDecode || mLayersReleased) && canDecodeInBackground(source)) {
+            // Views showing the same Uri at the same size share the decode
+            startLayerLoad(source.uri, forForegroundContent);
+            return;
+        } else {
+            // Resources are loaded through Resources, everything else is read and decoded here
+            if (source.type != ImageSource.TYPE_RESOURCE && (source.type != ImageSource.TYPE_URI
+                    || !ContentResolver.SCHEME_ANDROID_RESOURCE.equals(source.uri.getScheme()))) {
+                checkDecodeThread(source);
+            }
+            d = DecodingImageLoader.decode(getContext(), source, mLazyDecode ? getDecodeWidth() : 0,
+                    mLazyDecode ? getDecodeHeight() : 0);
+        }
+
+        if (d == null) {
+            Log.w(TAG, "Unable to resolve: " + source);
+            // Don't try again.
+            if (forForegroundContent) {
+                mForegroundSource = null;
+            } else {
+                mBackgroundSource = null;
+            }
+        }
+
+        updateDrawable(d, forForegroundContent);
+
+        if (loadInBackground) {
+            startLayerLoad(source.uri, forForegroundContent);
+        }
+    }
+
+    /**
+     * @return Whether the source can be decoded by a {@link LayerLoadTask}
+     */
+    private static boolean canDecodeInBackground(ImageSource source) {
+        return source.type == ImageSource.TYPE_URI
+                && !ContentResolver.SCHEME_ANDROID_RESOURCE.equals(source.uri.getScheme());
+    }
+
+    private void startLayerLoad(Uri uri, boolean forForegroundContent) {
+        startLayerLoad(uri, forForegroundContent, mLazyDecode ? getDecodeWidth() : 0,
+                mLazyDecode ? getDecodeHeight() : 0);
+    }
+
+    private void startLayerLoad(Uri uri, boolean forForegroundContent, int reqWidth, int reqHeight) {
+        LayerLoadTask load = new LayerLoadTask(this, uri, forForegroundContent, reqWidth, reqHeight,
+                getLoadPriority());
+        if (forForegroundContent) {
+            mForegroundLoad = load;
+        } else {
+            mBackgroundLoad = load;
+        }
+        load.start();
+        updateScrollListener();
+    }
+
+    /**
+     * Called on the main thread when a background load finishes, drawable is null if decoding
+     * failed.
+     */
+    void onLayerLoaded(LayerLoadTask load, Drawable drawable) {
+        final boolean isForeground = load.mForeground;
+        if ((isForeground ? mForegroundLoad : mBackgroundLoad) != load) {
+            return;
+        }
+
+        if (isForeground) {
+            mForegroundLoad = null;
+        } else {
+            mBackgroundLoad = null;
+        }
+        updateScrollListener();
+
+        if (drawable == null) {
+            if ((isForeground ? mForegroundDrawable : mBackgroundDrawable) == null) {
+                Log.w(TAG, "Unable to resolve: " + (isForeground ? mForegroundSource : mBackgroundSource));
+                // Don't try again.
+                if (isForeground) {
+                    mForegroundSource = null;
+                } else {
+                    mBackgroundSource = null;
+                }
+            }
+            // Nothing to pair with, don't hold back the other layer
+            applyPendingLayer(!isForeground);
+            return;
+        }
+
+        if ((isForeground ? mBackgroundLoad : mForegroundLoad) != null) {
+            if (isForeground) {
+                mPendingForegroundLayer = drawable;
+            } else {
+                mPendingBackgroundLayer = drawable;
             }
+            return;
+        }
 
-            if (mEnableDebugDraw && mSplitDrawPath != null) {
-                canvas.drawPath(mSplitDrawPath, mDebugDrawPaint);
-            }
-            canvas.restoreToCount(saveCount);
+        // Replacing the layer also applies the other layer if it is pending
+        applyLoadedLayer(drawable, isForeground);
+    }
+
+    private void applyPendingLayer(boolean forForegroundContent) {
+        Drawable pending = forForegroundContent ? mPendingForegroundLayer : mPendingBackgroundLayer;
+        if (pending != null) {
+            applyLoadedLayer(pending, forForegroundContent);
         }
     }
 
-    @Override
-    public void invalidateDrawable(Drawable dr) {
-        if (dr == mForegroundDrawable || dr == mBackgroundDrawable) {
-            /* we invalidate the whole view in this case because it's very
-             * hard to know where the drawable actually is. This is made
-             * complicated because of the offsets and transformations that
-             * can be applied. In theory we could get the drawable's bounds
-             * and run them through the transformation and offsets, but this
-             * is probably not worth the effort.
-             */
-            invalidate();
-        } else {
-            super.invalidateDrawable(dr);
+    private void applyLoadedLayer(Drawable drawable, boolean forForegroundContent) {
+        final int oldWidth = mMaxDrawableWidth;
+        final int oldHeight = mMaxDrawableHeight;
+
+        // A full image has the same intrinsic size as its preview, the content size only grows
+        // for a layer that had nothing to show before, e.g. one decoded lazily
+        updateDrawable(drawable, forForegroundContent);
+
+        if (mMaxDrawableWidth > oldWidth || mMaxDrawableHeight > oldHeight) {
+            requestLayout();
+            createPathForSplitPercent(mSplitPercent);
         }
+        invalidate();
     }
 
-    @Override
-    protected void onAttachedToWindow() {
-        super.onAttachedToWindow();
-        if (mBackgroundDrawable != null) {
-            mBackgroundDrawable.setVisible(getVisibility() == VISIBLE, false);
+    /**
+     * @return The DecodeScheduler priority for background loads of this view, depending on
+     * whether it is on screen.
+     */
+    private int getLoadPriority() {
+        if (!mAttachedToWindow) {
+            return DecodeScheduler.PRIORITY_PREFETCH;
         }
-        if (mForegroundDrawable != null) {
-            mForegroundDrawable.setVisible(getVisibility() == VISIBLE, false);
+        if (isOnScreen()) {
+            return DecodeScheduler.PRIORITY_VISIBLE;
         }
+        return DecodeScheduler.PRIORITY_NEAR_VISIBLE;
     }
 
-    @Override
-    protected void onDetachedFromWindow() {
-        super.onDetachedFromWindow();
-        if (mBackgroundDrawable != null) {
-            mBackgroundDrawable.setVisible(false, false);
+    private void updateLayerLoadPriority() {
+        if (mForegroundLoad == null && mBackgroundLoad == null) {
+            return;
         }
-        if (mForegroundDrawable != null) {
-            mForegroundDrawable.setVisible(false, false);
+        final int priority = getLoadPriority();
+        if (mForegroundLoad != null) {
+            mForegroundLoad.setPriority(priority);
+        }
+        if (mBackgroundLoad != null) {
+            mBackgroundLoad.setPriority(priority);
         }
     }
 
-    @Override
-    public void onInitializeAccessibilityEvent(AccessibilityEvent event) {
-        super.onInitializeAccessibilityEvent(event);
-        event.setClassName(SplitImageView.class.getName());
+    private void updateScrollListener() {
+        final boolean register = mAttachedToWindow && (mForegroundLoad != null || mBackgroundLoad != null);
+        if (register == mScrollListenerRegistered) {
+            return;
+        }
+        ViewTreeObserver observer = getViewTreeObserver();
+        if (register) {
+            observer.addOnScrollChangedListener(mScrollChangedListener);
+        } else if (observer.isAlive()) {
+            observer.removeOnScrollChangedListener(mScrollChangedListener);
+        }
+        mScrollListenerRegistered = register;
     }
 
-    @Override
-    public void onPopulateAccessibilityEvent(AccessibilityEvent event) {
-        super.onPopulateAccessibilityEvent(event);
-        CharSequence contentDescription = getContentDescription();
-        if (!TextUtils.isEmpty(contentDescription)) {
-            event.getText().add(contentDescription);
+    /**
+     * Stops decoding for a view that left the window, e.g. one recycled by a list, so the
+     * decode threads go to the views on screen. A layer that is pending keeps waiting for the
+     * interrupted load of the other layer, which is restarted with it.
+     */
+    private void interruptLayerLoads() {
+        mForegroundLoadInterrupted |= mForegroundLoad != null;
+        mBackgroundLoadInterrupted |= mBackgroundLoad != null;
+        mImageLoadsInterrupted |= mForegroundImageLoad != null || mBackgroundImageLoad != null;
+        stopLayerLoad(true);
+        stopLayerLoad(false);
+        updateScrollListener();
+    }
+
+    private void resumeLayerLoads() {
+        if (mForegroundLoadInterrupted) {
+            mForegroundLoadInterrupted = false;
+            if (mForegroundSource != null && mForegroundSource.type == ImageSource.TYPE_URI) {
+                startLayerLoad(mForegroundSource.uri, true);
+            }
+        }
+        if (mBackgroundLoadInterrupted) {
+            mBackgroundLoadInterrupted = false;
+            if (mBackgroundSource != null && mBackgroundSource.type == ImageSource.TYPE_URI) {
+                startLayerLoad(mBackgroundSource.uri, false);
+            }
+        }
+        // A pending layer whose partner could not be restarted has nothing left to wait for
+        if (mBackgroundLoad == null) {
+            applyPendingLayer(true);
+        }
+        if (mForegroundLoad == null) {
+            applyPendingLayer(false);
+        }
+        if (mImageLoadsInterrupted) {
+            mImageLoadsInterrupted = false;
+            // Layers whose request was cancelled are still empty and are requested again
+            resolveUris();
         }
     }
 
-    @Override
-    public void onInitializeAccessibilityNodeInfo(AccessibilityNodeInfo info) {
-        super.onInitializeAccessibilityNodeInfo(info);
-        info.setClassName(SplitImageView.class.getName());
-    }
+    private void cancelLayerLoad(boolean forForegroundContent) {
+        if (forForegroundContent) {
+            mForegroundLoadInterrupted = false;
+            mPendingForegroundLayer = null;
+        } else {
+            mBackgroundLoadInterrupted = false;
+            mPendingBackgroundLayer = null;
+        }
+        stopLayerLoad(forForegroundContent);
+        updateScrollListener();
 
-    @Override
-    protected boolean verifyDrawable(Drawable dr) {
-        return mForegroundDrawable == dr || mBackgroundDrawable == dr || super.verifyDrawable(dr);
+        // The other layer no longer has anything to wait for
+        applyPendingLayer(!forForegroundContent);
     }
 
-    @Override
-    public boolean onTouchEvent(MotionEvent event) {
-        if (mGestureDetector != null) {
-            mGestureDetector.onTouchEvent(event);
+    /**
+     * Cancels the running loads of a layer, leaving its pending layer and the one of the other
+     * layer as they are.
+     */
+    private void stopLayerLoad(boolean forForegroundContent) {
+        LayerLoadTask load = forForegroundContent ? mForegroundLoad : mBackgroundLoad;
+        if (load != null) {
+            load.cancel();
+            if (forForegroundContent) {
+                mForegroundLoad = null;
+            } else {
+                mBackgroundLoad = null;
+            }
         }
 
-        if (event.getAction() == MotionEvent.ACTION_UP) {
-            snapSplitToBounds();
+        LoadRequest request = forForegroundContent ? mForegroundImageLoad : mBackgroundImageLoad;
+        if (request != null) {
+            if (forForegroundContent) {
+                mForegroundImageLoad = null;
+            } else {
+                mBackgroundImageLoad = null;
+            }
+            request.cancel();
         }
-        return mUnveilOnTouch;
     }
 
-    @Override
-    protected Parcelable onSaveInstanceState() {
-        if (!mEnableAutomaticAnimation) {
-            Parcelable parcelable = super.onSaveInstanceState();
-            SavedState savedState = new SavedState(parcelable);
-            savedState.splitPercent = mSplitPercent;
-            return savedState;
+    private void startImageLoad(ImageLoader loader, ImageSource source, boolean forForegroundContent) {
+        LoadRequest request = new LoadRequest(this, source, forForegroundContent,
+                mHaveFrame ? Math.max(0, getDecodeWidth()) : 0, mHaveFrame ? Math.max(0, getDecodeHeight()) : 0);
+        if (forForegroundContent) {
+            mForegroundImageLoad = request;
+        } else {
+            mBackgroundImageLoad = request;
         }
-        return super.onSaveInstanceState();
+        // The loader may deliver before this returns
+        loader.load(request);
     }
 
-    @Override
-    protected void onRestoreInstanceState(Parcelable state) {
-        if (!(state instanceof  SavedState)) {
-            super.onRestoreInstanceState(state);
+    /**
+     * Called on the main thread when an {@link ImageLoader} delivers the image of a layer,
+     * drawable is null if loading failed.
+     */
+    void onImageLoaded(LoadRequest request, Drawable drawable) {
+        final boolean isForeground = request.mForeground;
+        if ((isForeground ? mForegroundImageLoad : mBackgroundImageLoad) != request) {
             return;
         }
 
-        SavedState savedState = (SavedState)state;
-        super.onRestoreInstanceState(savedState.getSuperState());
-        if (mSplitPercent != savedState.splitPercent) {
-            mSplitPercent = savedState.splitPercent;
+        if (isForeground) {
+            mForegroundImageLoad = null;
+        } else {
+            mBackgroundImageLoad = null;
+        }
+
+        if (drawable == null) {
+            Log.w(TAG, "Unable to load: " + request.getSource());
+            // Don't try again.
+            if (isForeground) {
+                mForegroundSource = null;
+            } else {
+                mBackgroundSource = null;
+            }
             createPathForSplitPercent(mSplitPercent);
+            return;
         }
-    }
 
-    private void initImageView() {
-        setLayerType(LAYER_TYPE_SOFTWARE, null);
-        mMatrix     = new Matrix();
-        mScaleType  = ScaleType.FIT_CENTER;
+        final int oldWidth = mMaxDrawableWidth;
+        final int oldHeight = mMaxDrawableHeight;
 
-        mDebugDrawPaint = new Paint();
-        mDebugDrawPaint.setColor(Color.RED);
-        mDebugDrawPaint.setStrokeWidth(5);
-        mDebugDrawPaint.setStyle(Paint.Style.STROKE);
+        updateDrawable(drawable, isForeground);
+        configureBounds();
+
+        if (mMaxDrawableWidth > oldWidth || mMaxDrawableHeight > oldHeight) {
+            requestLayout();
+        }
+        createPathForSplitPercent(mSplitPercent);
     }
 
-    private void resolveUris() {
-        resolveUri(false);
-        resolveUri(true);
+    private int getPreviewWidth() {
+        int width = getWidth() - getPaddingLeft() - getPaddingRight();
+        return mHaveFrame && width > 0 ? Math.max(1, width / PREVIEW_SIZE_DIVISOR) : DEFAULT_PREVIEW_SIZE;
     }
 
-    private void resolveUri(boolean forForegroundContent) {
-        Drawable drawable = forForegroundContent ? mForegroundDrawable : mBackgroundDrawable;
-        if (drawable != null) {
-            return;
-        }
+    private int getPreviewHeight() {
+        int height = getHeight() - getPaddingTop() - getPaddingBottom();
+        return mHaveFrame && height > 0 ? Math.max(1, height / PREVIEW_SIZE_DIVISOR) : DEFAULT_PREVIEW_SIZE;
+    }
 
-        Resources rsrc = getResources();
-        if (rsrc == null) {
+    /**
+     * Decodes the layers that lazy decoding has deferred, once the view is attached and has a
+     * frame.
+     */
+    private void resolveDeferredLayers() {
+        if (!mLazyDecode || !mAttachedToWindow || !mHaveFrame) {
             return;
         }
 
-        Drawable d = null;
+        if ((mForegroundSource != null && mForegroundDrawable == null)
+                || (mBackgroundSource != null && mBackgroundDrawable == null)) {
+            final int oldWidth = mMaxDrawableWidth;
+            final int oldHeight = mMaxDrawableHeight;
 
-        int resource = forForegroundContent ? mForegroundResId : mBackgroundResId;
-        Uri uri = forForegroundContent ? mForegroundUri : mBackgroundUri;
-        if (resource != 0) {
-            try {
-                d = rsrc.getDrawable(resource);
-            } catch (Exception e) {
-                Log.w(TAG, "Unable to find resource: " + resource, e);
-                // Don't try again.
+            resolveUris();
+            configureBounds();
 
-                if (forForegroundContent) {
-                    mForegroundUri = null;
-                } else {
-                    mBackgroundUri = null;
-                }
-            }
-        } else if (uri != null) {
-            String scheme = uri.getScheme();
-            if (ContentResolver.SCHEME_ANDROID_RESOURCE.equals(scheme)) {
-                try {
-                    // Load drawable through Resources, to get the source density information
-                    OpenResourceIdResult r = getResourceId(uri);
-                    d = r.r.getDrawable(r.id);
-                } catch (Exception e) {
-                    Log.w(TAG, "Unable to open content: " + uri, e);
-                }
-            } else if (ContentResolver.SCHEME_CONTENT.equals(scheme)
-                    || ContentResolver.SCHEME_FILE.equals(scheme)) {
-                InputStream stream = null;
-                try {
-                    stream = getContext().getContentResolver().openInputStream(uri);
-                    d = Drawable.createFromStream(stream, null);
-                } catch (Exception e) {
-                    Log.w(TAG, "Unable to open content: " + uri, e);
-                } finally {
-                    if (stream != null) {
-                        try {
-                            stream.close();
-                        } catch (IOException e) {
-                            Log.w(TAG, "Unable to close content: " + uri, e);
-                        }
-                    }
-                }
-            } else {
-                d = Drawable.createFromPath(uri.toString());
+            if (mMaxDrawableWidth > oldWidth || mMaxDrawableHeight > oldHeight) {
+                requestLayout();
             }
+            createPathForSplitPercent(mSplitPercent);
+        }
+    }
 
-            if (d == null) {
-                System.out.println("resolveUri failed on bad bitmap uri: " + uri);
-                // Don't try again.
-                if (forForegroundContent) {
-                    mForegroundUri = null;
-                } else {
-                    mBackgroundUri = null;
-                }
-            }
-        } else {
-            return;
+    /**
+     * The width lazily decoded Uris are subsampled to, or 0 when the scale type can show the
+     * image at full size.
+     */
+    private int getDecodeWidth() {
+        if (mScaleType == ScaleType.CENTER || mScaleType == ScaleType.MATRIX) {
+            return 0;
         }
+        return getWidth() - getPaddingLeft() - getPaddingRight();
+    }
 
-        updateDrawable(d, forForegroundContent);
+    private int getDecodeHeight() {
+        if (mScaleType == ScaleType.CENTER || mScaleType == ScaleType.MATRIX) {
+            return 0;
+        }
+        return getHeight() - getPaddingTop() - getPaddingBottom();
     }
 
     private void updateDrawable(Drawable d, boolean isForegroundDrawable) {
+        cancelLayerLoad(isForegroundDrawable);
+
         Drawable drawable = isForegroundDrawable ? mForegroundDrawable : mBackgroundDrawable;
         if (drawable != null) {
             drawable.setCallback(null);
@@ -888,9 +2809,19 @@ public class SplitImageView extends View {
 
         if (isForegroundDrawable) {
             mForegroundDrawable = d;
+            mForegroundBakedBitmap = null;
+            mForegroundBakeFailed = false;
+            mForegroundRaster.invalidate();
         } else {
             mBackgroundDrawable = d;
+            mBackgroundBakedBitmap = null;
+            mBackgroundBakeFailed = false;
+            mBackgroundRaster.invalidate();
         }
+        releaseMipmap(isForegroundDrawable);
+        mReportedViolations &= ~(SplitDiagnostics.VIOLATION_MAIN_THREAD_DECODE
+                | SplitDiagnostics.VIOLATION_OVERSIZED_LAYER);
+        invalidateDifferenceHeatmap();
 
         if (d != null) {
             d.setCallback(this);
@@ -900,6 +2831,7 @@ public class SplitImageView extends View {
             applyColorMod();
             configureBounds();
         }
+        LayerBudget.onLayersChanged(this);
     }
 
     private void configureBounds() {
@@ -913,20 +2845,14 @@ public class SplitImageView extends View {
         int vwidth = getWidth() - getPaddingLeft() - getPaddingRight();
         int vheight = getHeight() - getPaddingTop() - getPaddingBottom();
 
-        boolean fits = (dwidth < 0 || vwidth == dwidth) &&
-                (dheight < 0 || vheight == dheight);
-
-        if (dwidth <= 0 || dheight <= 0 || ScaleType.FIT_XY == mScaleType) {
-
+        if (SplitGeometry.fillsFrame(mScaleType, dwidth, dheight)) {
             if (mBackgroundDrawable != null) {
                 mBackgroundDrawable.setBounds(0, 0, vwidth, vheight);
             }
             if (mForegroundDrawable != null) {
                 mForegroundDrawable.setBounds(0, 0, vwidth, vheight);
             }
-            mDrawMatrix = null;
         } else {
-
             if (mForegroundDrawable != null) {
                 mForegroundDrawable.setBounds(0, 0, dwidth, dheight);
             }
@@ -934,60 +2860,67 @@ public class SplitImageView extends View {
             if (mBackgroundDrawable != null) {
                 mBackgroundDrawable.setBounds(0, 0, dwidth, dheight);
             }
+        }
+        mDrawMatrix = SplitGeometry.configureDrawMatrix(mScaleType, dwidth, dheight, vwidth, vheight,
+                mMatrix, mTempSrc, mTempDst);
+        updateZoomMatrix();
+        invalidateDifferenceHeatmap();
+
+        if (SplitDiagnostics.isEnabled()) {
+            checkLayerSize(mBackgroundDrawable, vwidth, vheight);
+            checkLayerSize(mForegroundDrawable, vwidth, vheight);
+        }
+    }
 
-            if (ScaleType.MATRIX == mScaleType) {
-                if (mMatrix.isIdentity()) {
-                    mDrawMatrix = null;
-                } else {
-                    mDrawMatrix = mMatrix;
-                }
-            } else if (fits) {
-                mDrawMatrix = null;
-            } else if (ScaleType.CENTER == mScaleType) {
-                mDrawMatrix = mMatrix;
-                mDrawMatrix.setTranslate((int) ((vwidth - dwidth) * 0.5f + 0.5f),
-                        (int) ((vheight - dheight) * 0.5f + 0.5f));
-            } else if (ScaleType.CENTER_CROP == mScaleType) {
-                mDrawMatrix = mMatrix;
-
-                float scale;
-                float dx = 0, dy = 0;
-
-                if (dwidth * vheight > vwidth * dheight) {
-                    scale = (float) vheight / (float) dheight;
-                    dx = (vwidth - dwidth * scale) * 0.5f;
-                } else {
-                    scale = (float) vwidth / (float) dwidth;
-                    dy = (vheight - dheight * scale) * 0.5f;
-                }
+    private boolean shouldReportViolation(int violation) {
+        if (!SplitDiagnostics.isEnabled() || (mReportedViolations & violation) != 0) {
+            return false;
+        }
+        mReportedViolations |= violation;
+        return true;
+    }
 
-                mDrawMatrix.setScale(scale, scale);
-                mDrawMatrix.postTranslate((int) (dx + 0.5f), (int) (dy + 0.5f));
-            } else if (ScaleType.CENTER_INSIDE == mScaleType) {
-                mDrawMatrix = mMatrix;
-                float scale;
-                float dx;
-                float dy;
+    private void checkDecodeThread(ImageSource source) {
+        if (Looper.myLooper() == Looper.getMainLooper()
+                && shouldReportViolation(SplitDiagnostics.VIOLATION_MAIN_THREAD_DECODE)) {
+            SplitDiagnostics.report(this, SplitDiagnostics.VIOLATION_MAIN_THREAD_DECODE,
+                    "Decoding " + source + " on the main thread");
+        }
+    }
 
-                if (dwidth <= vwidth && dheight <= vheight) {
-                    scale = 1.0f;
-                } else {
-                    scale = Math.min((float) vwidth / (float) dwidth,
-                            (float) vheight / (float) dheight);
-                }
+    private void checkAnimationAttached() {
+        if (!mAttachedToWindow
+                && shouldReportViolation(SplitDiagnostics.VIOLATION_ANIMATION_WHILE_DETACHED)) {
+            SplitDiagnostics.report(this, SplitDiagnostics.VIOLATION_ANIMATION_WHILE_DETACHED,
+                    "Split animation is running while the view is detached from its window");
+        }
+    }
 
-                dx = (int) ((vwidth - dwidth * scale) * 0.5f + 0.5f);
-                dy = (int) ((vheight - dheight * scale) * 0.5f + 0.5f);
+    private void checkLayerSize(Drawable drawable, int vwidth, int vheight) {
+        if (drawable == null) {
+            return;
+        }
 
-                mDrawMatrix.setScale(scale, scale);
-                mDrawMatrix.postTranslate(dx, dy);
-            } else {
-                mTempSrc.set(0, 0, dwidth, dheight);
-                mTempDst.set(0, 0, vwidth, vheight);
+        int iwidth = drawable.getIntrinsicWidth();
+        int iheight = drawable.getIntrinsicHeight();
+        if (iwidth <= 0 || iheight <= 0 || vwidth <= 0 || vheight <= 0) {
+            return;
+        }
 
-                mDrawMatrix = mMatrix;
-                mDrawMatrix.setRectToRect(mTempSrc, mTempDst, scaleTypeToScaleToFit(mScaleType));
-            }
+        mTempSrc.set(drawable.getBounds());
+        if (mDrawMatrix != null) {
+            mDrawMatrix.mapRect(mTempSrc);
+        }
+        // Only the part of the layer that lands inside the view is ever displayed
+        float displayedWidth = Math.min(mTempSrc.width(), vwidth);
+        float displayedHeight = Math.min(mTempSrc.height(), vheight);
+
+        if ((float) iwidth * iheight > SplitDiagnostics.getOversizeFactor() * displayedWidth * displayedHeight
+                && shouldReportViolation(SplitDiagnostics.VIOLATION_OVERSIZED_LAYER)) {
+            SplitDiagnostics.report(this, SplitDiagnostics.VIOLATION_OVERSIZED_LAYER,
+                    (drawable == mForegroundDrawable ? "Foreground" : "Background") + " layer is "
+                            + iwidth + "x" + iheight + " but displayed at "
+                            + (int) displayedWidth + "x" + (int) displayedHeight);
         }
     }
 
@@ -998,15 +2931,15 @@ public class SplitImageView extends View {
            int width = getScaleType() == ScaleType.FIT_XY ? getWidth() : mMaxDrawableWidth;
            int height = getScaleType() == ScaleType.FIT_XY ? getHeight() : mMaxDrawableHeight;
 
-           float aspectRatio = width/(height * 1.0f);
-           int max = Math.max(width, height);
-           float offset = -max + (max * 2) * (splitPercent/100.0f);
+           if (mSplitDrawPath == null) {
+               mSplitDrawPath = new Path();
+           }
+           SplitGeometry.buildSplitPath(mSplitDrawPath, width, height, splitPercent, mSplitPathCorners);
 
-           mSplitDrawPath = new Path();
-           mSplitDrawPath.moveTo(0, height);
-           mSplitDrawPath.lineTo(0, -offset);
-           mSplitDrawPath.lineTo(width + offset * aspectRatio, height);
-           mSplitDrawPath.close();
+           mSplitPathTop = mSplitPathCorners[0];
+           mSplitPathRight = mSplitPathCorners[1];
+           mSplitPathHeight = height;
+           mSplitDrawPath.computeBounds(mSplitPathBounds, true);
        } else {
            mSplitDrawPath = null;
        }
@@ -1014,11 +2947,22 @@ public class SplitImageView extends View {
     }
 
     private boolean hasForegroundContent() {
-        return mForegroundDrawable != null || mForegroundUri != null || mForegroundResId != 0;
+        return mForegroundDrawable != null || mForegroundSource != null;
     }
 
     private boolean hasBackgroundContent() {
-        return mBackgroundDrawable != null || mBackgroundUri != null || mBackgroundResId != 0;
+        return mBackgroundDrawable != null || mBackgroundSource != null;
+    }
+
+    private void updateMaxDrawableSize() {
+        if (mForegroundDrawable != null) {
+            mMaxDrawableWidth = Math.max(mForegroundDrawable.getIntrinsicWidth(), mMaxDrawableWidth);
+            mMaxDrawableHeight = Math.max(mForegroundDrawable.getIntrinsicHeight(), mMaxDrawableHeight);
+        }
+        if (mBackgroundDrawable != null) {
+            mMaxDrawableWidth = Math.max(mBackgroundDrawable.getIntrinsicWidth(), mMaxDrawableWidth);
+            mMaxDrawableHeight = Math.max(mBackgroundDrawable.getIntrinsicHeight(), mMaxDrawableHeight);
+        }
     }
 
     private void applyColorMod() {
@@ -1026,15 +2970,22 @@ public class SplitImageView extends View {
         // not reset the mColorMod flag, since these filters need to be
         // re-applied if the Drawable is changed.
         if (mColorMod) {
+            invalidateDifferenceHeatmap();
+            mForegroundBakedBitmap = null;
+            mBackgroundBakedBitmap = null;
+            mForegroundBakeFailed = false;
+            mBackgroundBakeFailed = false;
+            mForegroundRaster.invalidate();
+            mBackgroundRaster.invalidate();
             if (mBackgroundDrawable != null) {
                 mBackgroundDrawable = mBackgroundDrawable.mutate();
-                mBackgroundDrawable.setColorFilter(mColorFilter);
+                mBackgroundDrawable.setColorFilter(mBackgroundColorFilter);
                 mBackgroundDrawable.setAlpha(mAlpha * mViewAlphaScale >> 8);
             }
 
             if (mForegroundDrawable != null) {
                 mForegroundDrawable = mForegroundDrawable.mutate();
-                mForegroundDrawable.setColorFilter(mColorFilter);
+                mForegroundDrawable.setColorFilter(mForegroundColorFilter);
                 mForegroundDrawable.setAlpha(mAlpha * mViewAlphaScale >> 8);
             }
         }
@@ -1042,26 +2993,20 @@ public class SplitImageView extends View {
 
     private void snapSplitToBounds() {
         if (mUnveilOnTouch && mSnapToBounds) {
-            if (mSplitPercent >= 100 - SNAP_MARGIN_PERCENTAGE || mSplitPercent <= SNAP_MARGIN_PERCENTAGE) {
-                animateSplitPercent(mSplitPercent <= SNAP_MARGIN_PERCENTAGE ? 0 : 100);
+            // The group may not have applied the last drag to this view yet
+            int splitPercent = mSplitGroup != null ? mSplitGroup.getSplitPercent() : mSplitPercent;
+            if (splitPercent >= 100 - SNAP_MARGIN_PERCENTAGE || splitPercent <= SNAP_MARGIN_PERCENTAGE) {
+                animateSplitPercent(splitPercent, splitPercent <= SNAP_MARGIN_PERCENTAGE ? 0 : 100);
             }
         }
     }
 
-    private void animateSplitPercent(int toPercent) {
-        animateSplitPercent(mSplitPercent, toPercent);
-    }
-
     private void animateSplitPercent(int fromPercent, int toPercent) {
         if (!mIsAnimating && fromPercent >=0 && fromPercent <= 100 && toPercent >=0
                 && toPercent <= 100) {
             ValueAnimator valueAnimator = ValueAnimator.ofInt(fromPercent, toPercent);
-            valueAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-                @Override
-                public void onAnimationUpdate(ValueAnimator animation) {
-                    setSplitPercent((Integer) animation.getAnimatedValue());
-                }
-            });
+            mSnapAnimator = valueAnimator;
+            valueAnimator.addUpdateListener(mSplitPercentUpdateListener);
             valueAnimator.addListener(new Animator.AnimatorListener() {
                 @Override
                 public void onAnimationStart(Animator animation) {
@@ -1071,6 +3016,7 @@ public class SplitImageView extends View {
                 @Override
                 public void onAnimationEnd(Animator animation) {
                     mIsAnimating = false;
+                    mSnapAnimator = null;
                 }
 
                 @Override
@@ -1084,64 +3030,16 @@ public class SplitImageView extends View {
                 }
             });
             valueAnimator.setDuration((300 * Math.abs(toPercent - fromPercent))/SNAP_MARGIN_PERCENTAGE);
+            mFrameRateLimiter.reset(getContext());
             valueAnimator.start();
         } else {
             Log.e(TAG, "Error in animateSplitPercent, fromPercent and toPercent should be between 0 - 100");
         }
     }
 
-    private static final Matrix.ScaleToFit[] sS2FArray = {
-            Matrix.ScaleToFit.FILL,
-            Matrix.ScaleToFit.START,
-            Matrix.ScaleToFit.CENTER,
-            Matrix.ScaleToFit.END
-    };
-
-    private static Matrix.ScaleToFit scaleTypeToScaleToFit(ScaleType st)  {
-        // ScaleToFit enum to their corresponding Matrix.ScaleToFit values
-        return sS2FArray[st.nativeInt - 1];
-    }
-
-    private OpenResourceIdResult getResourceId(Uri uri) throws FileNotFoundException {
-        String authority = uri.getAuthority();
-        Resources r;
-        if (TextUtils.isEmpty(authority)) {
-            throw new FileNotFoundException("No authority: " + uri);
-        } else {
-            try {
-                r = getContext().getPackageManager().getResourcesForApplication(authority);
-            } catch (PackageManager.NameNotFoundException ex) {
-                throw new FileNotFoundException("No package found for authority: " + uri);
-            }
-        }
-        List<String> path = uri.getPathSegments();
-        if (path == null) {
-            throw new FileNotFoundException("No path: " + uri);
-        }
-        int len = path.size();
-        int id;
-        if (len == 1) {
-            try {
-                id = Integer.parseInt(path.get(0));
-            } catch (NumberFormatException e) {
-                throw new FileNotFoundException("Single path segment is not a resource ID: " + uri);
-            }
-        } else if (len == 2) {
-            id = r.getIdentifier(path.get(1), path.get(0), authority);
-        } else {
-            throw new FileNotFoundException("More than two path segments: " + uri);
-        }
-        if (id == 0) {
-            throw new FileNotFoundException("No resource found for: " + uri);
-        }
-        OpenResourceIdResult res = new OpenResourceIdResult();
-        res.r = r;
-        res.id = id;
-        return res;
-    }
-
     private void initGestureRecognizer() {
-        if (mUnveilOnTouch && !mEnableAutomaticAnimation && hasForegroundContent() && hasBackgroundContent() && mGestureDetector == null) {
+        mUnveilGestureEnabled = mUnveilOnTouch && !mEnableAutomaticAnimation && hasForegroundContent() && hasBackgroundContent();
+        if (mUnveilGestureEnabled && mGestureDetector == null) {
             mGestureDetector = new GestureDetector(getContext(), new GestureDetector.SimpleOnGestureListener() {
                 @Override
                 public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
@@ -1158,51 +3056,64 @@ public class SplitImageView extends View {
                     int fractionPercent = (int) (fraction * 100);
 
                     setSplitPercent(fractionPercent);
-                    Log.i(TAG, "Changing split percent:" + fractionPercent);
                     return true;
                 }
             });
-        } else {
-            mGestureDetector = null;
         }
     }
 
+    private boolean isAutomaticAnimationRunning() {
+        return (mAutomaticAnimationLeadIn != null && mAutomaticAnimationLeadIn.isStarted())
+                || (mAutomaticAnimationAnimatorSet != null && mAutomaticAnimationAnimatorSet.isStarted());
+    }
+
     private void startAutomaticAnimation() {
         if (mEnableAutomaticAnimation && hasForegroundContent() && hasBackgroundContent()) {
 
-            ValueAnimator currentSplitPercentToMax = ValueAnimator.ofInt(mSplitPercent, 100);
-            currentSplitPercentToMax.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+            // Lead in to the bound the animation was heading for, by default the maximum
+            final boolean towardsMax = mAutomaticAnimationTowardsMax;
+            final int leadInTarget = towardsMax ? 100 : 0;
+            ValueAnimator currentSplitPercentToBound = ValueAnimator.ofInt(mSplitPercent, leadInTarget);
+            mAutomaticAnimationLeadIn = currentSplitPercentToBound;
+            currentSplitPercentToBound.addUpdateListener(mSplitPercentUpdateListener);
+            currentSplitPercentToBound.setDuration((Math.abs(leadInTarget - mSplitPercent) * mAutomaticAnimationDuration)/100);
+
+            final ValueAnimator toMin = ValueAnimator.ofInt(100, 0);
+            toMin.addUpdateListener(mAutomaticSplitPercentUpdateListener);
+            toMin.setDuration(mAutomaticAnimationDuration);
+
+            final ValueAnimator toMax = ValueAnimator.ofInt(0, 100);
+            toMax.addUpdateListener(mAutomaticSplitPercentUpdateListener);
+            toMax.setDuration(mAutomaticAnimationDuration);
+
+            // Keeps track of the direction so that it can be saved with the instance state
+            Animator.AnimatorListener directionListener = new Animator.AnimatorListener() {
                 @Override
-                public void onAnimationUpdate(ValueAnimator animation) {
-                    setSplitPercent((Integer) animation.getAnimatedValue());
+                public void onAnimationStart(Animator animation) {
+                    mAutomaticAnimationTowardsMax = animation == toMax;
                 }
-            });
-            currentSplitPercentToMax.setDuration(((100 - mSplitPercent) * mAutomaticAnimationDuration)/100);
 
-            ValueAnimator toMin = ValueAnimator.ofInt(100, 0);
-            toMin.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
                 @Override
-                public void onAnimationUpdate(ValueAnimator animation) {
-                    if (mEnableAutomaticAnimation) {
-                        setSplitPercent((Integer) animation.getAnimatedValue());
-                    }
+                public void onAnimationEnd(Animator animation) {
+
                 }
-            });
-            toMin.setDuration(mAutomaticAnimationDuration);
 
-            ValueAnimator toMax = ValueAnimator.ofInt(0, 100);
-            toMax.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
                 @Override
-                public void onAnimationUpdate(ValueAnimator animation) {
-                    if (mEnableAutomaticAnimation) {
-                        setSplitPercent((Integer) animation.getAnimatedValue());
-                    }
+                public void onAnimationCancel(Animator animation) {
+
                 }
-            });
-            toMax.setDuration(mAutomaticAnimationDuration);
 
-            currentSplitPercentToMax.start();
-            currentSplitPercentToMax.addListener(new Animator.AnimatorListener() {
+                @Override
+                public void onAnimationRepeat(Animator animation) {
+
+                }
+            };
+            toMin.addListener(directionListener);
+            toMax.addListener(directionListener);
+
+            mFrameRateLimiter.reset(getContext());
+            currentSplitPercentToBound.start();
+            currentSplitPercentToBound.addListener(new Animator.AnimatorListener() {
                 @Override
                 public void onAnimationStart(Animator animation) {
 
@@ -1224,7 +3135,11 @@ public class SplitImageView extends View {
                 }
             });
             mAutomaticAnimationAnimatorSet = new AnimatorSet();
-            mAutomaticAnimationAnimatorSet.playSequentially(toMin, toMax);
+            if (towardsMax) {
+                mAutomaticAnimationAnimatorSet.playSequentially(toMin, toMax);
+            } else {
+                mAutomaticAnimationAnimatorSet.playSequentially(toMax, toMin);
+            }
 
             mAutomaticAnimationAnimatorSet.addListener(new Animator.AnimatorListener() {
                 @Override
@@ -1235,6 +3150,8 @@ public class SplitImageView extends View {
                 @Override
                 public void onAnimationEnd(Animator animation) {
                     if (mEnableAutomaticAnimation) {
+                        // Picks up power save mode changes once per loop
+                        mFrameRateLimiter.reset(getContext());
                         mAutomaticAnimationAnimatorSet.start();
                     }
                 }
@@ -1252,6 +3169,21 @@ public class SplitImageView extends View {
         }
     }
 
+    /**
+     * Cancels the running automatic animation without disabling it or letting the lead in
+     * chain into the loop, so that it can be started again right away.
+     */
+    private void cancelAutomaticAnimation() {
+        if (mAutomaticAnimationLeadIn != null) {
+            mAutomaticAnimationLeadIn.removeAllListeners();
+            mAutomaticAnimationLeadIn.cancel();
+        }
+        if (mAutomaticAnimationAnimatorSet != null) {
+            mAutomaticAnimationAnimatorSet.removeAllListeners();
+            mAutomaticAnimationAnimatorSet.cancel();
+        }
+    }
+
     private void stopAutomaticAnimation() {
         if (mEnableAutomaticAnimation) {
             mEnableAutomaticAnimation = false;
@@ -1262,15 +3194,6 @@ public class SplitImageView extends View {
         }
     }
 
-    /**
-     * A resource identified by the {@link android.content.res.Resources} that contains it, and a resource id.
-     *
-     */
-    private class OpenResourceIdResult {
-        public Resources r;
-        public int id;
-    }
-
     /**
      * Options for scaling the bounds of both images to the bounds of this view.
      */
@@ -1335,10 +3258,12 @@ public class SplitImageView extends View {
     static class SavedState extends BaseSavedState {
 
         int splitPercent;
+        boolean automaticAnimationTowardsMax;
 
         public SavedState(Parcel source) {
             super(source);
             splitPercent = source.readInt();
+            automaticAnimationTowardsMax = source.readInt() != 0;
         }
 
         public SavedState(Parcelable superState) {
@@ -1349,6 +3274,7 @@ public class SplitImageView extends View {
         public void writeToParcel(Parcel dest, int flags) {
             super.writeToParcel(dest, flags);
             dest.writeInt(splitPercent);
+            dest.writeInt(automaticAnimationTowardsMax ? 1 : 0);
         }
 
         //required field that makes Parcelables from a Parcel
@@ -0,0 +1,174 @@
+package com.alihafizji.splitimageview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+import android.media.ExifInterface;
+
+/**
+ * Draws a foreground and a background bitmap split the same way {@link SplitImageView} does,
+ * without a View or a Context. Use it to produce share images or previews of a comparison.
+ *
+ * A SplitRenderer is immutable and every render call works on its own scratch objects, so one
+ * instance can be used from any number of threads at once. The bitmaps passed in are only read.
+ */
+public class SplitRenderer {
+
+    private final SplitImageView.ScaleType mScaleType;
+    private final Matrix mImageMatrix;
+
+    /**
+     * Creates a renderer that places both bitmaps using the given scale type.
+     *
+     * @param scaleType Any scale type except {@link SplitImageView.ScaleType#MATRIX}, which needs
+     *                  an image matrix
+     */
+    public SplitRenderer(SplitImageView.ScaleType scaleType) {
+        this(scaleType, null);
+    }
+
+    /**
+     * @param scaleType The scale type to place both bitmaps with
+     * @param imageMatrix The matrix used for {@link SplitImageView.ScaleType#MATRIX}. It is
+     *                    copied, null is the identity.
+     */
+    public SplitRenderer(SplitImageView.ScaleType scaleType, Matrix imageMatrix) {
+        if (scaleType == null) {
+            throw new NullPointerException();
+        }
+        mScaleType = scaleType;
+        mImageMatrix = imageMatrix == null ? new Matrix() : new Matrix(imageMatrix);
+    }
+
+    public SplitImageView.ScaleType getScaleType() {
+        return mScaleType;
+    }
+
+    /**
+     * Renders the split into a new ARGB_8888 bitmap.
+     *
+     * @see #render(android.graphics.Canvas, int, int, android.graphics.Bitmap, android.graphics.Bitmap, int)
+     */
+    public Bitmap render(int width, int height, Bitmap foreground, Bitmap background, int splitPercent) {
+        return render(width, height, foreground, ExifInterface.ORIENTATION_NORMAL, background,
+                ExifInterface.ORIENTATION_NORMAL, splitPercent);
+    }
+
+    /**
+     * Renders the split of two bitmaps that are shown in an EXIF orientation into a new
+     * ARGB_8888 bitmap.
+     */
+    Bitmap render(int width, int height, Bitmap foreground, int foregroundOrientation, Bitmap background,
+                  int backgroundOrientation, int splitPercent) {
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        render(new Canvas(bitmap), width, height, foreground, foregroundOrientation, background,
+                backgroundOrientation, splitPercent);
+        return bitmap;
+    }
+
+    /**
+     * Renders the split into the top left width x height pixels of the canvas.
+     *
+     * @param foreground The foreground bitmap, or null
+     * @param background The background bitmap, or null
+     * @param splitPercent The split percent, between 0 and 100
+     */
+    public void render(Canvas canvas, int width, int height, Bitmap foreground, Bitmap background,
+                       int splitPercent) {
+        render(canvas, width, height, foreground, ExifInterface.ORIENTATION_NORMAL, background,
+                ExifInterface.ORIENTATION_NORMAL, splitPercent);
+    }
+
+    /**
+     * @param foregroundOrientation The ExifInterface.ORIENTATION_ constant the foreground is shown in
+     * @param backgroundOrientation The ExifInterface.ORIENTATION_ constant the background is shown in
+     * @see #render(android.graphics.Canvas, int, int, android.graphics.Bitmap, android.graphics.Bitmap, int)
+     */
+    void render(Canvas canvas, int width, int height, Bitmap foreground, int foregroundOrientation,
+                Bitmap background, int backgroundOrientation, int splitPercent) {
+        if (splitPercent < 0 || splitPercent > 100) {
+            throw new IllegalArgumentException("Split percent should be between 0 and 100 and not:" + splitPercent);
+        }
+        if (foreground == null && background == null) {
+            return;
+        }
+
+        int dwidth = Math.max(getOrientedWidth(foreground, foregroundOrientation),
+                getOrientedWidth(background, backgroundOrientation));
+        int dheight = Math.max(getOrientedHeight(foreground, foregroundOrientation),
+                getOrientedHeight(background, backgroundOrientation));
+        if (dwidth == 0 || dheight == 0) {
+            return;     // nothing to draw (empty bounds)
+        }
+
+        RectF bounds;
+        if (SplitGeometry.fillsFrame(mScaleType, dwidth, dheight)) {
+            bounds = new RectF(0, 0, width, height);
+        } else {
+            bounds = new RectF(0, 0, dwidth, dheight);
+        }
+        Matrix drawMatrix = SplitGeometry.configureDrawMatrix(mScaleType, dwidth, dheight, width, height,
+                new Matrix(mImageMatrix), new RectF(), new RectF());
+
+        Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        int saveCount = canvas.save();
+        canvas.clipRect(0, 0, width, height);
+        if (drawMatrix != null) {
+            canvas.concat(drawMatrix);
+        }
+
+        if (background != null) {
+            drawLayer(canvas, background, backgroundOrientation, bounds, paint);
+        }
+
+        if (foreground != null) {
+            if (background != null) {
+                Path splitPath = new Path();
+                SplitGeometry.buildSplitPath(splitPath, (int) bounds.width(), (int) bounds.height(),
+                        splitPercent, null);
+                canvas.clipPath(splitPath);
+            }
+            drawLayer(canvas, foreground, foregroundOrientation, bounds, paint);
+        }
+        canvas.restoreToCount(saveCount);
+    }
+
+    /**
+     * Draws a bitmap into bounds in its orientation, the same way OrientedDrawable does.
+     */
+    private static void drawLayer(Canvas canvas, Bitmap bitmap, int orientation, RectF bounds, Paint paint) {
+        if (orientation == ExifInterface.ORIENTATION_NORMAL) {
+            canvas.drawBitmap(bitmap, null, bounds, paint);
+            return;
+        }
+
+        final boolean swapsDimensions = OrientedDrawable.swapsDimensions(orientation);
+        final float width = swapsDimensions ? bounds.height() : bounds.width();
+        final float height = swapsDimensions ? bounds.width() : bounds.height();
+        Matrix matrix = new Matrix();
+        OrientedDrawable.setOrientationMatrix(matrix, orientation, Math.round(width), Math.round(height));
+        matrix.postTranslate(bounds.left, bounds.top);
+
+        int saveCount = canvas.save();
+        canvas.concat(matrix);
+        canvas.drawBitmap(bitmap, null, new RectF(0, 0, width, height), paint);
+        canvas.restoreToCount(saveCount);
+    }
+
+    private static int getOrientedWidth(Bitmap bitmap, int orientation) {
+        if (bitmap == null) {
+            return -1;
+        }
+        return OrientedDrawable.swapsDimensions(orientation) ? bitmap.getHeight() : bitmap.getWidth();
+    }
+
+    private static int getOrientedHeight(Bitmap bitmap, int orientation) {
+        if (bitmap == null) {
+            return -1;
+        }
+        return OrientedDrawable.swapsDimensions(orientation) ? bitmap.getWidth() : bitmap.getHeight();
+    }
+}
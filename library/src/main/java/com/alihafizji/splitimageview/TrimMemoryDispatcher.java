@@ -0,0 +1,58 @@
+package com.alihafizji.splitimageview;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.WeakHashMap;
+
+/**
+ * Forwards the memory trim callbacks of the application to every live {@link SplitImageView}
+ * and to the {@link LayerRetainer}. Views are held weakly, so registering a view never keeps it
+ * alive.
+ */
+final class TrimMemoryDispatcher implements ComponentCallbacks2 {
+
+    private static TrimMemoryDispatcher sInstance;
+
+    private final WeakHashMap<SplitImageView, Boolean> mViews = new WeakHashMap<SplitImageView, Boolean>();
+
+    private TrimMemoryDispatcher() {
+    }
+
+    static synchronized void register(SplitImageView view) {
+        if (sInstance == null) {
+            Context applicationContext = view.getContext().getApplicationContext();
+            if (applicationContext == null) {
+                // e.g. a view created in an edit mode or test context
+                return;
+            }
+            sInstance = new TrimMemoryDispatcher();
+            applicationContext.registerComponentCallbacks(sInstance);
+        }
+        sInstance.mViews.put(view, Boolean.TRUE);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        List<SplitImageView> views;
+        synchronized (TrimMemoryDispatcher.class) {
+            views = new ArrayList<SplitImageView>(mViews.keySet());
+        }
+        for (SplitImageView view : views) {
+            view.onTrimMemory(level);
+        }
+        LayerRetainer.onTrimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+}